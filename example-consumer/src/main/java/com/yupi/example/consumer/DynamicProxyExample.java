@@ -12,7 +12,7 @@ public class DynamicProxyExample {
         RpcApplication.init();
         
         // 使用动态代理方式
-        ServiceProxy serviceProxy = new ServiceProxy();
+        ServiceProxy serviceProxy = new ServiceProxy(UserService.class);
         UserService userService = (UserService) Proxy.newProxyInstance(
                 UserService.class.getClassLoader(),
                 new Class[]{UserService.class},
@@ -0,0 +1,41 @@
+package com.yupi.yurpc.compressor;
+
+import java.io.IOException;
+
+/**
+ * 压缩器接口（对序列化后的消息体压缩）
+ */
+public interface Compressor {
+
+    /**
+     * 压缩
+     * @param bytes
+     * @return
+     * @throws IOException
+     */
+    byte[] compress(byte[] bytes) throws IOException;
+
+    /**
+     * 解压
+     * @param bytes
+     * @return
+     * @throws IOException
+     */
+    byte[] decompress(byte[] bytes) throws IOException;
+
+    /**
+     * 解压，限制解压后的最大长度（防止解压炸弹）
+     * 默认实现解压后再检查长度，内置压缩器在解压过程中检查，不会分配超过上限的内存
+     * @param bytes
+     * @param maxLength 解压后的最大长度
+     * @return
+     * @throws IOException 解压后超过最大长度
+     */
+    default byte[] decompress(byte[] bytes, int maxLength) throws IOException {
+        byte[] result = decompress(bytes);
+        if (result.length > maxLength) {
+            throw new IOException("解压后长度超过上限: " + maxLength);
+        }
+        return result;
+    }
+}
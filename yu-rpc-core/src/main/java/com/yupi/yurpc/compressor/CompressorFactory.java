@@ -0,0 +1,33 @@
+package com.yupi.yurpc.compressor;
+
+import com.yupi.yurpc.spi.SpiLoader;
+
+/**
+ * 压缩器工厂（工厂模式，用于获取压缩器对象）
+ */
+public class CompressorFactory {
+
+    /**
+     * 是否已初始化SPI加载器
+     */
+    private static volatile boolean initFlag = false;
+
+    /**
+     * 获取压缩器实例（懒加载方式）
+     *
+     * @param key 压缩器键名
+     * @return 压缩器实例
+     */
+    public static Compressor getInstance(String key) {
+        // 双重检查锁定确保线程安全
+        if (!initFlag) {
+            synchronized (CompressorFactory.class) {
+                if (!initFlag) {
+                    SpiLoader.load(Compressor.class);
+                    initFlag = true;
+                }
+            }
+        }
+        return SpiLoader.getInstance(Compressor.class, key);
+    }
+}
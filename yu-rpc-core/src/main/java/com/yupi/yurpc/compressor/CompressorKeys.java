@@ -0,0 +1,15 @@
+package com.yupi.yurpc.compressor;
+
+/**
+ * 压缩器键名常量
+ */
+public interface CompressorKeys {
+
+    /**
+     * 不压缩
+     */
+    String NONE = "none";
+    String GZIP = "gzip";
+    String LZ4 = "lz4";
+
+}
@@ -0,0 +1,58 @@
+package com.yupi.yurpc.config;
+
+import lombok.Data;
+
+/**
+ * 客户端（服务消费者）传输配置
+ */
+@Data
+public class ClientConfig {
+
+    /**
+     * 每个服务地址的最大连接数
+     * 连接是多路复用的，现有连接都在忙时才会新建
+     */
+    private Integer maxConnections = 2;
+
+    /**
+     * 建立连接超时时间（毫秒）
+     */
+    private Integer connectTimeout = 3000;
+
+    /**
+     * 空闲连接超时时间（毫秒），超过后连接被回收
+     */
+    private Long idleTimeout = 60000L;
+
+    /**
+     * 连接最大存活时间（毫秒），超过后不再复用，0 表示不限制
+     */
+    private Long maxLifetime = 30 * 60 * 1000L;
+
+    /**
+     * 请求超时时间（毫秒），超时未收到响应的请求会被清理
+     */
+    private Long requestTimeout = 30000L;
+
+    /**
+     * 按服务、方法单独配置的超时时间（毫秒），格式：接口全类名=毫秒,接口全类名#方法名=毫秒
+     * 优先级：方法配置 > @RpcReference(timeout) > 服务配置 > requestTimeout
+     */
+    private String timeouts;
+
+    /**
+     * 心跳间隔（毫秒），连接超过该时间没有收到数据时发送心跳，0 表示不发送
+     */
+    private Long heartbeatInterval = 15000L;
+
+    /**
+     * 心跳超时时间（毫秒），超过该时间没有收到任何数据（包括心跳回复）的连接视为已失效，关闭并让在途请求失败
+     */
+    private Long heartbeatTimeout = 45000L;
+
+    /**
+     * 是否启用连接级方法字典（同一连接上重复调用的方法只发送方法编号）
+     * 只在握手协商到 v2 协议后生效，Json 序列化时不启用
+     */
+    private Boolean methodDictionary = true;
+}
@@ -1,4 +1,5 @@
 package com.yupi.yurpc.config;
+import com.yupi.yurpc.compressor.CompressorKeys;
 import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
 import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
 import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
@@ -40,11 +41,42 @@ public class RpcConfig {
      */
     private String serializer = "jdk";
 
+    /**
+     * 压缩器类型（none 表示不压缩）
+     */
+    private String compressor = CompressorKeys.NONE;
+
+    /**
+     * 消息体达到该大小（字节）才压缩，小消息不值得消耗 CPU
+     */
+    private int compressThreshold = 2048;
+
+    /**
+     * 单帧（消息头 + 消息体）最大长度（字节），解压后的消息体同样受此限制
+     * 超过该长度的帧视为非法，连接被关闭，避免异常的长度字段导致超大内存分配
+     */
+    private int maxFrameLength = 16 * 1024 * 1024;
+
     /**
      * 注册中心配置
      */
     private RegistryConfig registryConfig=new RegistryConfig();
 
+    /**
+     * 客户端传输配置
+     */
+    private ClientConfig clientConfig=new ClientConfig();
+
+    /**
+     * 服务端配置
+     */
+    private ServerConfig serverConfig=new ServerConfig();
+
+    /**
+     * 网络传输配置
+     */
+    private TransportConfig transportConfig=new TransportConfig();
+
     /**
      * 负载均衡类型
      */
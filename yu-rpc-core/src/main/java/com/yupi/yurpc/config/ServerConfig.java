@@ -0,0 +1,58 @@
+package com.yupi.yurpc.config;
+
+import com.yupi.yurpc.server.executor.ProviderExecutorKeys;
+import com.yupi.yurpc.server.executor.RejectPolicyKeys;
+import lombok.Data;
+
+/**
+ * 服务端（服务提供者）配置
+ */
+@Data
+public class ServerConfig {
+
+    /**
+     * 业务线程池类型
+     */
+    private String executor = ProviderExecutorKeys.FIXED;
+
+    /**
+     * 业务线程数（bulkhead 模式下为每个服务的线程数）
+     */
+    private Integer workerThreads = 200;
+
+    /**
+     * 等待队列容量
+     */
+    private Integer queueCapacity = 1000;
+
+    /**
+     * virtual 模式下的最大并发请求数（同时执行的虚拟线程数），超过后按拒绝策略处理，0 表示不限制
+     */
+    private Integer maxConcurrency = 1000;
+
+    /**
+     * 队列已满时的拒绝策略
+     */
+    private String rejectPolicy = RejectPolicyKeys.ABORT;
+
+    /**
+     * 连接空闲超时时间（毫秒），超过该时间没有收到数据的连接被关闭，0 表示不关闭
+     * 需要大于客户端的心跳间隔
+     */
+    private Long idleTimeout = 60000L;
+
+    /**
+     * TCP 服务器实例数，多个实例监听同一端口，由 Vert.x 把新连接分配到不同的事件循环线程
+     */
+    private Integer instances = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Vert.x 事件循环线程数，0 表示使用 Vert.x 默认值（CPU 核数 * 2）
+     */
+    private Integer eventLoopPoolSize = 0;
+
+    /**
+     * Vert.x 工作线程数，0 表示使用 Vert.x 默认值（20）
+     */
+    private Integer workerPoolSize = 0;
+}
@@ -0,0 +1,50 @@
+package com.yupi.yurpc.config;
+
+import lombok.Data;
+
+/**
+ * 网络传输配置（服务端和客户端共用）
+ */
+@Data
+public class TransportConfig {
+
+    /**
+     * 是否优先使用原生传输（Linux 上为 epoll），需要在类路径中加入对应平台的 netty 原生库，不可用时自动退回 NIO
+     */
+    private boolean nativeTransport = true;
+
+    /**
+     * 是否禁用 Nagle 算法，小消息立即发送
+     */
+    private boolean tcpNoDelay = true;
+
+    /**
+     * 是否开启 TCP keepalive（连接存活主要由心跳检测保证）
+     */
+    private boolean tcpKeepAlive = false;
+
+    /**
+     * 发送缓冲区大小（字节），0 表示使用系统默认值
+     */
+    private int sendBufferSize = 0;
+
+    /**
+     * 接收缓冲区大小（字节），0 表示使用系统默认值
+     */
+    private int receiveBufferSize = 0;
+
+    /**
+     * 是否开启 SO_REUSEPORT（需要原生传输）
+     */
+    private boolean reusePort = false;
+
+    /**
+     * 服务端等待 accept 的连接队列长度
+     */
+    private int acceptBacklog = 1024;
+
+    /**
+     * 单条连接等待写出的最大字节数（包括已写入通道但未发送的数据），对端读取过慢时超过的帧直接失败，需要大于单帧最大长度
+     */
+    private long maxPendingWriteBytes = 64 * 1024 * 1024L;
+}
@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * RPC 请求
@@ -41,5 +42,21 @@ public class RpcRequest implements Serializable {
      */
     private Object[] args;
 
+    /**
+     * 方法编号（TCP 连接级方法字典分配，0 表示未使用）
+     * 编号已定义时请求只携带编号和参数，服务名、方法名、版本和参数类型为空
+     */
+    private int methodId;
+
+    /**
+     * 附加信息（调用方 RpcContext 中的附加信息），通过 v2 协议的消息头传输，不参与消息体序列化
+     */
+    private transient Map<String, String> attachments;
+
+    /**
+     * 调用超时时间（毫秒），0 表示使用全局配置的 requestTimeout，不参与消息体序列化
+     */
+    private transient long timeout;
+
 }
 
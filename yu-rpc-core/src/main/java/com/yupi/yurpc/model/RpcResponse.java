@@ -26,6 +26,11 @@ public class RpcResponse implements Serializable {
      */
     private Class<?> dataType;
 
+    /**
+     * 带泛型参数的完整返回类型名（如 java.util.List&lt;com.yupi.User&gt;），返回类型不带泛型时为 null
+     */
+    private String genericDataType;
+
     /**
      * 响应信息
      */
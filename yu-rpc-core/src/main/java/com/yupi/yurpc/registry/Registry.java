@@ -47,10 +47,10 @@ public interface Registry {
     void heartBeat();
 
     /**
-     * 监听服务节点变化（服务端)
-     * @param serviceNodeKey
+     * 监听服务下所有节点的变化（消费端），变化直接更新本地缓存
+     * @param serviceKey 服务键
      */
-    void watch(String serviceNodeKey);
+    void watch(String serviceKey);
 
 }
 
@@ -1,6 +1,8 @@
 package com.yupi.yurpc.serializer;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * 序列化器接口
@@ -24,5 +26,29 @@ public interface Serializer {
      * @throws IOException
      */
     <T> T deserialize(byte[]bytes,Class<T> type)throws IOException;
-}
 
+    /**
+     * 序列化并直接写入输出流（如传输层缓冲区），不关闭输出流
+     * 默认先序列化成字节数组再写入，实现类可重写以省去中间数组
+     * @param object
+     * @param outputStream
+     * @param <T>
+     * @throws IOException
+     */
+    default <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        outputStream.write(serialize(object));
+    }
+
+    /**
+     * 直接从输入流（如传输层缓冲区）反序列化，输入流中只包含该对象的数据
+     * 默认先读出全部字节再反序列化，实现类可重写以省去中间数组
+     * @param inputStream
+     * @param type
+     * @return
+     * @param <T>
+     * @throws IOException
+     */
+    default <T> T deserialize(InputStream inputStream, Class<T> type) throws IOException {
+        return deserialize(inputStream.readAllBytes(), type);
+    }
+}
@@ -9,6 +9,8 @@ public interface SerializerKeys {
     String JSON = "json";
     String KRYO = "kryo";
     String HESSIAN = "hessian";
+    String PROTOSTUFF = "protostuff";
+    String HESSIAN2 = "hessian2";
 
 }
 
@@ -0,0 +1,19 @@
+package com.yupi.yurpc.server.executor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 服务提供者业务执行器
+ * 请求在 I/O 线程解码后交给执行器调用服务方法，避免慢方法阻塞事件循环
+ */
+public interface ProviderExecutor {
+
+    /**
+     * 执行请求处理任务
+     *
+     * @param serviceName 服务名称
+     * @param task        处理任务
+     * @throws RejectedExecutionException 执行器已满
+     */
+    void execute(String serviceName, Runnable task);
+}
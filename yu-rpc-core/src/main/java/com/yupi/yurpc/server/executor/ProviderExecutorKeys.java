@@ -0,0 +1,27 @@
+package com.yupi.yurpc.server.executor;
+
+/**
+ * 服务提供者业务执行器键名常量
+ */
+public interface ProviderExecutorKeys {
+
+    /**
+     * 共享的固定大小线程池
+     */
+    String FIXED = "fixed";
+
+    /**
+     * 每个服务独立线程池（舱壁隔离）
+     */
+    String BULKHEAD = "bulkhead";
+
+    /**
+     * 虚拟线程（JDK 21+，低版本退化为固定线程池）
+     */
+    String VIRTUAL = "virtual";
+
+    /**
+     * 直接在 I/O 线程执行
+     */
+    String DIRECT = "direct";
+}
@@ -0,0 +1,17 @@
+package com.yupi.yurpc.server.executor;
+
+/**
+ * 业务执行器拒绝策略键名常量
+ */
+public interface RejectPolicyKeys {
+
+    /**
+     * 拒绝请求，直接返回错误响应
+     */
+    String ABORT = "abort";
+
+    /**
+     * 由提交线程（I/O 线程）执行
+     */
+    String CALLER_RUNS = "caller_runs";
+}
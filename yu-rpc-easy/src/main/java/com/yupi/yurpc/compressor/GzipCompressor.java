@@ -0,0 +1,39 @@
+package com.yupi.yurpc.compressor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip 压缩器（JDK 自带，压缩率高，速度较慢）
+ */
+public class GzipCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) throws IOException {
+        return decompress(bytes, Integer.MAX_VALUE - 1);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes, int maxLength) throws IOException {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            // 多读一个字节判断是否超过上限，按实际数据量分块分配，不预先分配上限大小
+            byte[] result = gzipInputStream.readNBytes(maxLength + 1);
+            if (result.length > maxLength) {
+                throw new IOException("解压后长度超过上限: " + maxLength);
+            }
+            return result;
+        }
+    }
+}
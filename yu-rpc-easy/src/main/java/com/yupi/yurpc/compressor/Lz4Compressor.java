@@ -0,0 +1,65 @@
+package com.yupi.yurpc.compressor;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.IOException;
+
+/**
+ * LZ4 压缩器（速度快，适合 RPC 消息）
+ * 格式：原始长度（4 字节） + LZ4 块
+ */
+public class Lz4Compressor implements Compressor {
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private static final LZ4Compressor COMPRESSOR = LZ4_FACTORY.fastCompressor();
+
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4_FACTORY.fastDecompressor();
+
+    @Override
+    public byte[] compress(byte[] bytes) throws IOException {
+        byte[] compressed = new byte[4 + COMPRESSOR.maxCompressedLength(bytes.length)];
+        writeInt(compressed, bytes.length);
+        int compressedLength = COMPRESSOR.compress(bytes, 0, bytes.length, compressed, 4);
+        byte[] result = new byte[4 + compressedLength];
+        System.arraycopy(compressed, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) throws IOException {
+        return decompress(bytes, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes, int maxLength) throws IOException {
+        if (bytes.length < 4) {
+            throw new IOException("LZ4 数据不完整");
+        }
+        // 按数据中声明的原始长度分配，先检查上限
+        int length = readInt(bytes);
+        if (length < 0 || length > maxLength) {
+            throw new IOException("LZ4 原始长度非法: " + length + "，最大长度: " + maxLength);
+        }
+        byte[] result = new byte[length];
+        try {
+            DECOMPRESSOR.decompress(bytes, 4, result, 0, length);
+        } catch (RuntimeException e) {
+            throw new IOException("LZ4 解压失败", e);
+        }
+        return result;
+    }
+
+    private static void writeInt(byte[] bytes, int value) {
+        bytes[0] = (byte) (value >>> 24);
+        bytes[1] = (byte) (value >>> 16);
+        bytes[2] = (byte) (value >>> 8);
+        bytes[3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes) {
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+}
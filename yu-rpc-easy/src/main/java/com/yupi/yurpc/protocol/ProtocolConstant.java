@@ -23,4 +23,42 @@ public interface ProtocolConstant {
      * 协议版本号
      */
     byte PROTOCOL_VERSION = 0x1;
+
+    /**
+     * v2 协议：消息头之后是标志字节和可选的附加信息，再之后才是序列化后的消息体
+     */
+    byte PROTOCOL_VERSION_2 = 0x2;
+
+    /**
+     * 支持的最高协议版本（连接建立后通过握手协商）
+     */
+    byte MAX_PROTOCOL_VERSION = PROTOCOL_VERSION_2;
+
+    /**
+     * v2 标志字节：带附加信息（int 长度 + 若干个 [short 键长度][键][short 值长度][值]）
+     */
+    int ATTACHMENTS_FLAG = 0x01;
+
+    /**
+     * 附加信息键：调用方剩余的超时时间（毫秒），服务端据此丢弃调用方已放弃的请求
+     * 传相对时间而不是截止时间戳，不受两端时钟偏差影响
+     */
+    String TIMEOUT_ATTACHMENT = "rpc.timeout";
+
+    /**
+     * 序列化器字节中序列化器所占的位
+     */
+    int SERIALIZER_MASK = 0x0F;
+
+    /**
+     * 序列化器字节中压缩器的偏移和所占的位
+     */
+    int COMPRESSOR_SHIFT = 4;
+
+    int COMPRESSOR_MASK = 0x07;
+
+    /**
+     * 序列化器字节的最高位：消息体已压缩
+     */
+    int COMPRESSED_FLAG = 0x80;
 }
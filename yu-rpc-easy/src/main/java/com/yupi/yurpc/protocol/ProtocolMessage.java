@@ -1,8 +1,13 @@
 package com.yupi.yurpc.protocol;
 
+import io.vertx.core.buffer.Buffer;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
 
 /**
  * 协议消息结构
@@ -43,6 +48,12 @@ public class ProtocolMessage<T> {
          */
         private byte serializer;
 
+        /**
+         * 压缩器（编码时与序列化器共用一个字节：低 4 位序列化器，4~6 位压缩器，最高位表示消息体已压缩）
+         * 请求方声明自己支持的压缩器，响应沿用请求头，因此响应也按该压缩器压缩
+         */
+        private byte compressor;
+
         /**
          * 消息类型（请求 / 响应）
          */
@@ -62,6 +73,26 @@ public class ProtocolMessage<T> {
          * 消息体长度
          */
         private int bodyLength;
+
+        /**
+         * 附加信息（v2 协议，如截止时间、链路 id），不经过消息体序列化
+         */
+        private Map<String, String> attachments;
+
+        /**
+         * 解码时只保存附加信息的原始字节，首次读取时再解析
+         */
+        @ToString.Exclude
+        @EqualsAndHashCode.Exclude
+        private Buffer rawAttachments;
+
+        public Map<String, String> getAttachments() {
+            if (attachments == null && rawAttachments != null) {
+                attachments = ProtocolMessageDecoder.decodeAttachments(rawAttachments);
+                rawAttachments = null;
+            }
+            return attachments;
+        }
     }
 
 }
@@ -1,15 +1,22 @@
 package com.yupi.yurpc.protocol;
 
-
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.compressor.Compressor;
+import com.yupi.yurpc.compressor.CompressorFactory;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
+import io.netty.buffer.ByteBufInputStream;
 import io.vertx.core.buffer.Buffer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ProtocolMessageDecoder {
 
@@ -33,8 +40,16 @@ public class ProtocolMessageDecoder {
             throw new RuntimeException("消息magic非法");
         }
         header.setMagic(magic);
-        header.setVersion(buffer.getByte(1));
-        header.setSerializer(buffer.getByte(2));
+        byte version = buffer.getByte(1);
+        //校验版本号
+        if (version < ProtocolConstant.PROTOCOL_VERSION || version > ProtocolConstant.MAX_PROTOCOL_VERSION) {
+            throw new RuntimeException("协议版本不支持: " + version);
+        }
+        header.setVersion(version);
+        //序列化器字节：低 4 位序列化器，4~6 位压缩器，最高位表示消息体已压缩
+        byte serializerByte = buffer.getByte(2);
+        header.setSerializer((byte) (serializerByte & ProtocolConstant.SERIALIZER_MASK));
+        header.setCompressor((byte) (serializerByte >> ProtocolConstant.COMPRESSOR_SHIFT & ProtocolConstant.COMPRESSOR_MASK));
         header.setType(buffer.getByte(3));
         header.setStatus(buffer.getByte(4));
         header.setRequestId(buffer.getLong(5));
@@ -46,8 +61,39 @@ public class ProtocolMessageDecoder {
             throw new RuntimeException("消息体数据不完整，期望长度: " + totalLength + ", 实际长度: " + buffer.length());
         }
 
-        //解决粘包问题 - 只读取当前消息的数据
-        byte[] bodyBytes = buffer.getBytes(17, 17 + header.getBodyLength());
+        //v2 协议：标志字节和附加信息，附加信息只保存切片，用到时再解析
+        int bodyStart = ProtocolConstant.MESSAGE_HEADER_LENGTH;
+        if (version >= ProtocolConstant.PROTOCOL_VERSION_2) {
+            byte flags = buffer.getByte(bodyStart++);
+            if ((flags & ProtocolConstant.ATTACHMENTS_FLAG) != 0) {
+                int attachmentsLength = buffer.getInt(bodyStart);
+                bodyStart += 4;
+                if (attachmentsLength < 0 || bodyStart + attachmentsLength > totalLength) {
+                    throw new RuntimeException("附加信息长度非法: " + attachmentsLength);
+                }
+                Buffer rawAttachments = buffer.slice(bodyStart, bodyStart + attachmentsLength);
+                // 只校验长度字段，键值仍在读取时才解析
+                checkAttachments(rawAttachments);
+                header.setRawAttachments(rawAttachments);
+                bodyStart += attachmentsLength;
+            }
+        }
+
+        //握手、心跳消息没有消息体
+        ProtocolMessageTypeEnum messageTypeEnum = ProtocolMessageTypeEnum.getEnumByKey(header.getType());
+        if (messageTypeEnum == null) {
+            throw new RuntimeException("序列化消息类型不存在");
+        }
+        if (messageTypeEnum == ProtocolMessageTypeEnum.HANDSHAKE || messageTypeEnum == ProtocolMessageTypeEnum.HEART_BEAT) {
+            return new ProtocolMessage<>(header, null);
+        }
+
+        //解决粘包问题 - 只读取当前消息的数据，序列化器直接从缓冲区读取，不复制
+        InputStream bodyInputStream = new ByteBufInputStream(
+                buffer.getByteBuf().slice(bodyStart, totalLength - bodyStart));
+        if ((serializerByte & ProtocolConstant.COMPRESSED_FLAG) != 0) {
+            bodyInputStream = new ByteArrayInputStream(decompress(header.getCompressor(), bodyInputStream.readAllBytes()));
+        }
 
         //解析消息体
         ProtocolMessageSerializerEnum serializerEnum = ProtocolMessageSerializerEnum.getEnumByKey(header.getSerializer());
@@ -55,24 +101,89 @@ public class ProtocolMessageDecoder {
             throw new RuntimeException("序列化消息的协议不存在");
         }
         Serializer serializer = SerializerFactory.getInstance(serializerEnum.getValue());
-        ProtocolMessageTypeEnum messageTypeEnum = ProtocolMessageTypeEnum.getEnumByKey(header.getType());
-        if (messageTypeEnum == null) {
-            throw new RuntimeException("序列化消息类型不存在");
-        }
         switch (messageTypeEnum) {
             case REQUEST:
-                RpcRequest request = serializer.deserialize(bodyBytes, RpcRequest.class);
+                RpcRequest request = serializer.deserialize(bodyInputStream, RpcRequest.class);
                 return new ProtocolMessage<>(header, request);
             case RESPONSE:
-                RpcResponse response = serializer.deserialize(bodyBytes, RpcResponse.class);
+                RpcResponse response = serializer.deserialize(bodyInputStream, RpcResponse.class);
                 return new ProtocolMessage<>(header, response);
-            case HEART_BEAT:
             case OTHERS:
             default:
                 throw new RuntimeException("暂不支持该消息类型");
         }
     }
 
+    /**
+     * 解析附加信息：若干个 [short 键长度][键][short 值长度][值]
+     *
+     * @param buffer 附加信息的原始字节
+     * @return
+     */
+    static Map<String, String> decodeAttachments(Buffer buffer) {
+        Map<String, String> attachments = new HashMap<>();
+        int offset = 0;
+        while (offset < buffer.length()) {
+            int keyLength = getAttachmentLength(buffer, offset);
+            String key = buffer.getString(offset + 2, offset + 2 + keyLength, "UTF-8");
+            offset += 2 + keyLength;
+            int valueLength = getAttachmentLength(buffer, offset);
+            String value = buffer.getString(offset + 2, offset + 2 + valueLength, "UTF-8");
+            offset += 2 + valueLength;
+            attachments.put(key, value);
+        }
+        return attachments;
+    }
+
+    /**
+     * 校验附加信息的长度字段，避免读取时越界
+     *
+     * @param buffer 附加信息的原始字节
+     */
+    private static void checkAttachments(Buffer buffer) {
+        int offset = 0;
+        while (offset < buffer.length()) {
+            offset += 2 + getAttachmentLength(buffer, offset);
+            offset += 2 + getAttachmentLength(buffer, offset);
+        }
+    }
+
+    /**
+     * 读取附加信息中键或值的长度，并检查内容没有越过附加信息的末尾
+     *
+     * @param buffer 附加信息的原始字节
+     * @param offset 长度字段的位置
+     * @return
+     */
+    private static int getAttachmentLength(Buffer buffer, int offset) {
+        if (offset + 2 > buffer.length()) {
+            throw new RuntimeException("附加信息数据不完整，位置: " + offset);
+        }
+        int length = buffer.getUnsignedShort(offset);
+        if (offset + 2 + length > buffer.length()) {
+            throw new RuntimeException("附加信息长度非法: " + length + "，位置: " + offset);
+        }
+        return length;
+    }
+
+    /**
+     * 解压消息体
+     *
+     * @param compressorKey 消息头中的压缩器
+     * @param body          压缩后的消息体
+     * @return
+     * @throws IOException
+     */
+    private static byte[] decompress(int compressorKey, byte[] body) throws IOException {
+        ProtocolMessageCompressorEnum compressorEnum = ProtocolMessageCompressorEnum.getEnumByKey(compressorKey);
+        if (compressorEnum == null || compressorEnum == ProtocolMessageCompressorEnum.NONE) {
+            throw new RuntimeException("压缩消息的协议不存在");
+        }
+        Compressor compressor = CompressorFactory.getInstance(compressorEnum.getValue());
+        // 解压后的消息体同样受单帧最大长度限制
+        return compressor.decompress(body, RpcApplication.getRpcConfig().getMaxFrameLength());
+    }
+
     /**
      * 批量解码协议消息，解决粘包问题
      * @param buffer 可能包含多个协议消息的buffer
@@ -97,8 +208,8 @@ public class ProtocolMessageDecoder {
                 break; // 数据不完整，等待更多数据
             }
             
-            // 提取单个消息的buffer
-            Buffer messageBuffer = buffer.getBuffer(offset, offset + totalLength);
+            // 提取单个消息的buffer（切片，不复制）
+            Buffer messageBuffer = buffer.slice(offset, offset + totalLength);
             
             // 解码单个消息
             ProtocolMessage<?> message = decode(messageBuffer);
@@ -1,12 +1,53 @@
 package com.yupi.yurpc.protocol;
 
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.compressor.Compressor;
+import com.yupi.yurpc.compressor.CompressorFactory;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.buffer.Buffer;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 public class ProtocolMessageEncoder {
+
+    /**
+     * 序列化器字节在消息头中的偏移量
+     */
+    private static final int SERIALIZER_OFFSET = 2;
+
+    /**
+     * 消息体长度在消息头中的偏移量
+     */
+    private static final int BODY_LENGTH_OFFSET = 13;
+
+    /**
+     * 附加信息中单个键或值的最大字节数
+     */
+    private static final int MAX_ATTACHMENT_LENGTH = 0xFFFF;
+
+    /**
+     * 最小初始容量
+     */
+    private static final int MIN_CAPACITY = 256;
+
+    /**
+     * 池化的直接内存分配器
+     */
+    private static final ByteBufAllocator POOLED_ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    /**
+     * 预估的帧长度（取最近一次编码的长度），用于预分配容量，避免写入过程中扩容
+     */
+    private static volatile int sizeHint = MIN_CAPACITY;
+
     /**
      * 编码
      *
@@ -18,25 +59,134 @@ public class ProtocolMessageEncoder {
         if (protocolMessage == null || protocolMessage.getHeader() == null) {
             return Buffer.buffer();
         }
+        return Buffer.buffer(encode(protocolMessage, Unpooled.buffer(sizeHint)));
+    }
+
+    /**
+     * 编码到池化的直接内存，交给 Netty 写出后由 Netty 释放；调用方不写出时需要自行 release
+     *
+     * @param protocolMessage
+     * @return
+     * @throws IOException
+     */
+    public static ByteBuf encodeDirect(ProtocolMessage<?> protocolMessage) throws IOException {
+        ByteBuf byteBuf = POOLED_ALLOCATOR.directBuffer(sizeHint);
+        try {
+            return encode(protocolMessage, byteBuf);
+        } catch (IOException | RuntimeException e) {
+            byteBuf.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 先预留消息头，消息体直接写入缓冲区，最后回填序列化器字节（含压缩标志）和消息体长度
+     *
+     * @param protocolMessage
+     * @param byteBuf         目标缓冲区
+     * @return
+     * @throws IOException
+     */
+    private static ByteBuf encode(ProtocolMessage<?> protocolMessage, ByteBuf byteBuf) throws IOException {
         ProtocolMessage.Header header = protocolMessage.getHeader();
-        // 依次向缓冲区写入字节
-        Buffer buffer = Buffer.buffer();
-        buffer.appendByte(header.getMagic());
-        buffer.appendByte(header.getVersion());
-        buffer.appendByte(header.getSerializer());
-        buffer.appendByte(header.getType());
-        buffer.appendByte(header.getStatus());
-        buffer.appendLong(header.getRequestId());
         // 获取序列化器
         ProtocolMessageSerializerEnum serializerEnum = ProtocolMessageSerializerEnum.getEnumByKey(header.getSerializer());
         if (serializerEnum == null) {
             throw new RuntimeException("序列化协议不存在");
         }
         Serializer serializer = SerializerFactory.getInstance(serializerEnum.getValue());
-        byte[] bodyBytes = serializer.serialize(protocolMessage.getBody());
-        // 写入 body 长度和数据
-        buffer.appendInt(bodyBytes.length);
-        buffer.appendBytes(bodyBytes);
-        return buffer;
+        // 依次向缓冲区写入字节，body 长度先占位
+        byteBuf.writeByte(header.getMagic());
+        byteBuf.writeByte(header.getVersion());
+        byteBuf.writeByte(0);
+        byteBuf.writeByte(header.getType());
+        byteBuf.writeByte(header.getStatus());
+        byteBuf.writeLong(header.getRequestId());
+        byteBuf.writeInt(0);
+        // v2 协议：标志字节和附加信息
+        if (header.getVersion() >= ProtocolConstant.PROTOCOL_VERSION_2) {
+            writeAttachments(byteBuf, header.getAttachments());
+        }
+        // 序列化器直接把 body 写入缓冲区（握手、心跳等控制消息没有 body）
+        int bodyStart = byteBuf.writerIndex();
+        if (protocolMessage.getBody() != null) {
+            serializer.serialize(protocolMessage.getBody(), new ByteBufOutputStream(byteBuf));
+        }
+        // 回填序列化器字节：低 4 位序列化器，4~6 位声明的压缩器，达到阈值且压缩后更小时置最高位
+        int compressorKey = header.getCompressor() & ProtocolConstant.COMPRESSOR_MASK;
+        int serializerByte = (header.getSerializer() & ProtocolConstant.SERIALIZER_MASK)
+                | compressorKey << ProtocolConstant.COMPRESSOR_SHIFT;
+        if (compressorKey != ProtocolMessageCompressorEnum.NONE.getKey() && compress(byteBuf, bodyStart, compressorKey)) {
+            serializerByte |= ProtocolConstant.COMPRESSED_FLAG;
+        }
+        byteBuf.setByte(SERIALIZER_OFFSET, serializerByte);
+        // 回填 body 长度
+        int frameLength = byteBuf.writerIndex();
+        byteBuf.setInt(BODY_LENGTH_OFFSET, frameLength - ProtocolConstant.MESSAGE_HEADER_LENGTH);
+        sizeHint = Math.max(MIN_CAPACITY, frameLength);
+        return byteBuf;
+    }
+
+    /**
+     * 写入 v2 标志字节和附加信息，附加信息长度先占位后回填
+     *
+     * @param byteBuf
+     * @param attachments
+     */
+    private static void writeAttachments(ByteBuf byteBuf, Map<String, String> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            byteBuf.writeByte(0);
+            return;
+        }
+        byteBuf.writeByte(ProtocolConstant.ATTACHMENTS_FLAG);
+        int lengthIndex = byteBuf.writerIndex();
+        byteBuf.writeInt(0);
+        for (Map.Entry<String, String> entry : attachments.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            writeString(byteBuf, entry.getKey());
+            writeString(byteBuf, entry.getValue());
+        }
+        byteBuf.setInt(lengthIndex, byteBuf.writerIndex() - lengthIndex - 4);
+    }
+
+    private static void writeString(ByteBuf byteBuf, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_ATTACHMENT_LENGTH) {
+            throw new IllegalArgumentException("附加信息过长: " + value.substring(0, 32) + "...");
+        }
+        byteBuf.writeShort(bytes.length);
+        byteBuf.writeBytes(bytes);
+    }
+
+    /**
+     * 压缩已写入的消息体，压缩后更小时替换原消息体（附加信息不压缩）
+     *
+     * @param byteBuf       已写入消息头和消息体的缓冲区
+     * @param bodyStart     消息体起始位置
+     * @param compressorKey
+     * @return 是否已压缩
+     * @throws IOException
+     */
+    private static boolean compress(ByteBuf byteBuf, int bodyStart, int compressorKey) throws IOException {
+        int bodyLength = byteBuf.writerIndex() - bodyStart;
+        if (bodyLength < RpcApplication.getRpcConfig().getCompressThreshold()) {
+            return false;
+        }
+        ProtocolMessageCompressorEnum compressorEnum = ProtocolMessageCompressorEnum.getEnumByKey(compressorKey);
+        if (compressorEnum == null) {
+            throw new RuntimeException("压缩协议不存在");
+        }
+        Compressor compressor = CompressorFactory.getInstance(compressorEnum.getValue());
+        byte[] body = new byte[bodyLength];
+        byteBuf.getBytes(bodyStart, body);
+        byte[] compressed = compressor.compress(body);
+        if (compressed.length >= bodyLength) {
+            return false;
+        }
+        byteBuf.writerIndex(bodyStart);
+        byteBuf.writeBytes(compressed);
+        return true;
     }
 }
@@ -20,7 +20,9 @@ public enum ProtocolMessageSerializerEnum {
     JDK(0, "jdk"),
     JSON(1, "json"),
     KRYO(2, "kryo"),
-    HESSIAN(3, "hessian");
+    HESSIAN(3, "hessian"),
+    PROTOSTUFF(4, "protostuff"),
+    HESSIAN2(5, "hessian2");
 
     private final int key;
 
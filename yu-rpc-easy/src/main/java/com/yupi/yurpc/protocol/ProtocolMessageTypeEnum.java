@@ -15,7 +15,8 @@ public enum ProtocolMessageTypeEnum {
     REQUEST(0),
     RESPONSE(1),
     HEART_BEAT(2),
-    OTHERS(3);
+    OTHERS(3),
+    HANDSHAKE(4);
 
     private final int key;
 
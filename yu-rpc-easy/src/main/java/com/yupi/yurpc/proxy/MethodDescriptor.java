@@ -0,0 +1,52 @@
+package com.yupi.yurpc.proxy;
+
+import cn.hutool.core.util.ClassUtil;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 服务方法描述（创建代理时预先计算，调用时直接使用）
+ */
+@Getter
+public class MethodDescriptor {
+
+    private final Method method;
+
+    private final String serviceName;
+
+    private final String methodName;
+
+    private final Class<?>[] parameterTypes;
+
+    /**
+     * 返回类型是否为异步结果（CompletableFuture 及其父接口）
+     */
+    private final boolean futureReturnType;
+
+    /**
+     * 返回类型的默认值（异步发起调用时先返回该值）
+     */
+    private final Object defaultValue;
+
+    /**
+     * 调用超时时间（毫秒），0 表示使用全局配置
+     */
+    private final long timeout;
+
+    public MethodDescriptor(String serviceName, Method method) {
+        this(serviceName, method, 0);
+    }
+
+    public MethodDescriptor(String serviceName, Method method, long timeout) {
+        Class<?> returnType = method.getReturnType();
+        this.method = method;
+        this.serviceName = serviceName;
+        this.methodName = method.getName();
+        this.parameterTypes = method.getParameterTypes();
+        this.futureReturnType = returnType != Object.class && returnType.isAssignableFrom(CompletableFuture.class);
+        this.defaultValue = ClassUtil.getDefaultValue(returnType);
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,150 @@
+package com.yupi.yurpc.proxy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 调用上下文
+ * 让同步接口也能异步调用：
+ * <pre>
+ * CompletableFuture&lt;User&gt; future = RpcContext.async(() -> userService.getUser(user));
+ * </pre>
+ * 附加信息：消费者设置后随当前线程的后续调用一起发送（v2 协议），提供者在服务方法中读取：
+ * <pre>
+ * RpcContext.setAttachment("traceId", traceId);
+ * String traceId = RpcContext.getAttachment("traceId");
+ * </pre>
+ */
+public class RpcContext {
+
+    /**
+     * 当前线程的下一次远程调用是否异步发起
+     */
+    private static final ThreadLocal<Boolean> ASYNC_FLAG = new ThreadLocal<>();
+
+    /**
+     * 异步发起的调用结果
+     */
+    private static final ThreadLocal<CompletableFuture<?>> ASYNC_FUTURE = new ThreadLocal<>();
+
+    /**
+     * 当前线程的附加信息
+     */
+    private static final ThreadLocal<Map<String, String>> ATTACHMENTS = new ThreadLocal<>();
+
+    /**
+     * 异步执行一次远程调用
+     * supplier 中的远程调用立即返回默认值，真正的结果通过返回的 future 获取
+     *
+     * @param call 包含一次代理对象调用的逻辑
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> async(Supplier<T> call) {
+        ASYNC_FLAG.set(Boolean.TRUE);
+        T result;
+        try {
+            result = call.get();
+        } finally {
+            ASYNC_FLAG.remove();
+        }
+        CompletableFuture<?> future = ASYNC_FUTURE.get();
+        ASYNC_FUTURE.remove();
+        // 没有经过远程代理（如 mock 或本地对象），直接包装结果
+        if (future == null) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * 读取并清除异步标记（每个标记只生效一次）
+     *
+     * @return
+     */
+    static boolean consumeAsyncFlag() {
+        if (ASYNC_FLAG.get() == null) {
+            return false;
+        }
+        ASYNC_FLAG.remove();
+        return true;
+    }
+
+    static void setAsyncFuture(CompletableFuture<?> future) {
+        ASYNC_FUTURE.set(future);
+    }
+
+    /**
+     * 设置附加信息，对当前线程之后的调用都生效，直到被移除
+     *
+     * @param key
+     * @param value
+     */
+    public static void setAttachment(String key, String value) {
+        Map<String, String> attachments = ATTACHMENTS.get();
+        if (attachments == null) {
+            attachments = new HashMap<>();
+            ATTACHMENTS.set(attachments);
+        }
+        attachments.put(key, value);
+    }
+
+    /**
+     * 获取附加信息（提供者中为本次请求携带的附加信息）
+     *
+     * @param key
+     * @return
+     */
+    public static String getAttachment(String key) {
+        Map<String, String> attachments = ATTACHMENTS.get();
+        return attachments == null ? null : attachments.get(key);
+    }
+
+    /**
+     * 获取当前线程的全部附加信息
+     *
+     * @return 没有时返回空 Map
+     */
+    public static Map<String, String> getAttachments() {
+        Map<String, String> attachments = ATTACHMENTS.get();
+        return attachments == null ? Collections.emptyMap() : Collections.unmodifiableMap(attachments);
+    }
+
+    public static void removeAttachment(String key) {
+        Map<String, String> attachments = ATTACHMENTS.get();
+        if (attachments != null) {
+            attachments.remove(key);
+        }
+    }
+
+    /**
+     * 替换当前线程的附加信息（提供者处理请求前由框架设置）
+     *
+     * @param attachments 为空时清除
+     */
+    public static void setAttachments(Map<String, String> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            ATTACHMENTS.remove();
+            return;
+        }
+        ATTACHMENTS.set(new HashMap<>(attachments));
+    }
+
+    public static void clearAttachments() {
+        ATTACHMENTS.remove();
+    }
+
+    /**
+     * 当前线程附加信息的快照，随请求发送（调用可能在其他线程中重试）
+     *
+     * @return 没有时返回 null
+     */
+    static Map<String, String> snapshotAttachments() {
+        Map<String, String> attachments = ATTACHMENTS.get();
+        return attachments == null || attachments.isEmpty() ? null : new HashMap<>(attachments);
+    }
+}
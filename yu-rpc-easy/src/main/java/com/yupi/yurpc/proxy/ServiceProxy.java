@@ -2,9 +2,8 @@ package com.yupi.yurpc.proxy;
 
 
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.util.IdUtil;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
 import com.yupi.yurpc.RpcApplication;
 import com.yupi.yurpc.config.RpcConfig;
 import com.yupi.yurpc.constant.RpcConstant;
@@ -18,41 +17,130 @@ import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.model.ServiceMetaInfo;
-import com.yupi.yurpc.protocol.*;
 import com.yupi.yurpc.registry.Registry;
 import com.yupi.yurpc.registry.RegistryFactory;
-import com.yupi.yurpc.serializer.Serializer;
-import com.yupi.yurpc.serializer.SerializerFactory;
 import com.yupi.yurpc.server.tcp.VertxTcpClient;
-import io.vertx.core.Future;
-import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
-import io.vertx.core.net.NetClient;
-import io.vertx.core.net.NetSocket;
-import io.vertx.core.net.SocketAddress;
-
-import java.io.IOException;
+import lombok.extern.slf4j.Slf4j;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 服务代理（JDK 动态代理）
+ * 每个服务接口一个实例：方法描述、注册中心和各类策略在创建代理时解析完毕，调用时只需组装参数并发送
  *
  * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
  * @learn <a href="https://codefather.cn">编程宝典</a>
  * @from <a href="https://yupi.icu">编程导航知识星球</a>
  */
+@Slf4j
 public class ServiceProxy implements InvocationHandler {
 
+    /**
+     * 异步调用失败后执行重试、容错的线程数
+     */
+    private static final int FALLBACK_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * 等待执行重试、容错的失败调用数上限
+     */
+    private static final int FALLBACK_QUEUE_CAPACITY = 1024;
+
+    /**
+     * 异步调用失败后执行重试、容错的线程池（有界，大量调用同时失败时不会无限创建线程，超出的调用直接失败）
+     */
+    private static final ThreadPoolExecutor FALLBACK_EXECUTOR = createFallbackExecutor();
+
+    /**
+     * 客户端本地IP地址（只解析一次）
+     */
+    private static final String CLIENT_IP = getClientIp();
+
+    private final Class<?> serviceClass;
+
+    /**
+     * 方法 => 方法描述
+     */
+    private final Map<Method, MethodDescriptor> methodDescriptorMap;
+
+    private final String serviceKey;
+
+    private final Registry registry;
+
+    private final LoadBalancer loadBalancer;
+
+    private final RetryStrategy retryStrategy;
+
+    private final TolerantStrategy tolerantStrategy;
+
+    public ServiceProxy(Class<?> serviceClass) {
+        this(serviceClass, 0);
+    }
+
+    /**
+     * @param serviceClass
+     * @param timeout      服务级超时时间（毫秒，如 @RpcReference 指定），0 表示不指定
+     */
+    public ServiceProxy(Class<?> serviceClass, long timeout) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        String serviceName = serviceClass.getName();
+        Map<String, Long> timeouts = parseTimeouts(rpcConfig.getClientConfig().getTimeouts());
+        Map<Method, MethodDescriptor> methodDescriptorMap = new HashMap<>();
+        for (Method method : serviceClass.getMethods()) {
+            // 方法配置 > 代理指定 > 服务配置
+            Long methodTimeout = timeouts.get(serviceName + "#" + method.getName());
+            if (methodTimeout == null) {
+                methodTimeout = timeout > 0 ? timeout : timeouts.getOrDefault(serviceName, 0L);
+            }
+            methodDescriptorMap.put(method, new MethodDescriptor(serviceName, method, methodTimeout));
+        }
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceVersion(RpcConstant.DEFAULT_SERVICE_VERSION);
+
+        this.serviceClass = serviceClass;
+        this.methodDescriptorMap = methodDescriptorMap;
+        this.serviceKey = serviceMetaInfo.getServiceKey();
+        this.registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
+        this.loadBalancer = LoadBalancerFactory.getInstance(rpcConfig.getLoadBalance());
+        this.retryStrategy = RetryStrategyFactory.getInstance(rpcConfig.getRetryStrategy());
+        this.tolerantStrategy = TolerantStrategyFactory.getInstance(rpcConfig.getTolerantStrategy());
+    }
+
+    /**
+     * 解析超时配置
+     *
+     * @param spec 接口全类名=毫秒,接口全类名#方法名=毫秒
+     * @return 接口全类名（#方法名） => 超时时间
+     */
+    static Map<String, Long> parseTimeouts(String spec) {
+        Map<String, Long> timeouts = new HashMap<>();
+        if (StrUtil.isBlank(spec)) {
+            return timeouts;
+        }
+        for (String item : StrUtil.splitTrim(spec, ',')) {
+            List<String> pair = StrUtil.splitTrim(item, '=');
+            if (pair.size() != 2) {
+                throw new IllegalArgumentException("超时配置格式错误: " + item);
+            }
+            timeouts.put(pair.get(0), Long.parseLong(pair.get(1)));
+        }
+        return timeouts;
+    }
+
     /**
      * 获取客户端本地IP地址
      */
-    private String getClientIp() {
+    private static String getClientIp() {
         try {
             return java.net.InetAddress.getLocalHost().getHostAddress();
         } catch (Exception e) {
@@ -69,40 +157,39 @@ public class ServiceProxy implements InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        // 指定序列化器
-        final Serializer serializer = SerializerFactory.getInstance(RpcApplication.getRpcConfig().getSerializer());
+        MethodDescriptor methodDescriptor = methodDescriptorMap.get(method);
+        if (methodDescriptor == null) {
+            // Object 的方法在本地处理，不发起远程调用
+            return invokeObjectMethod(proxy, method, args);
+        }
 
         // 构造请求
-        String serviceName = method.getDeclaringClass().getName();
         RpcRequest rpcRequest = RpcRequest.builder()
-                .serviceName(serviceName)
-                .methodName(method.getName())
-                .parameterTypes(method.getParameterTypes())
+                .serviceName(methodDescriptor.getServiceName())
+                .methodName(methodDescriptor.getMethodName())
+                .serviceVersion(RpcConstant.DEFAULT_SERVICE_VERSION)
+                .parameterTypes(methodDescriptor.getParameterTypes())
                 .args(args)
+                .attachments(RpcContext.snapshotAttachments())
+                .timeout(methodDescriptor.getTimeout())
                 .build();
+        // 返回 CompletableFuture 的方法，或通过 RpcContext.async 发起的调用，走异步链路
+        boolean asyncContext = RpcContext.consumeAsyncFlag();
+        if (asyncContext || methodDescriptor.isFutureReturnType()) {
+            CompletableFuture<Object> future = doInvokeAsync(method, args, rpcRequest);
+            if (asyncContext) {
+                RpcContext.setAsyncFuture(future);
+            }
+            return methodDescriptor.isFutureReturnType() ? future : methodDescriptor.getDefaultValue();
+        }
         try {
-            // 序列化
-            byte[] bodyBytes = serializer.serialize(rpcRequest);
             // 从注册中心获取服务提供者请求地址
-            RpcConfig rpcConfig = RpcApplication.getRpcConfig();
-            Registry registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
-            ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
-            serviceMetaInfo.setServiceName(serviceName);
-            serviceMetaInfo.setServiceVersion(RpcConstant.DEFAULT_SERVICE_VERSION);
-            List<ServiceMetaInfo> serviceMetaInfoList = registry.serviceDiscovery(serviceMetaInfo.getServiceKey());
-            if (CollUtil.isEmpty(serviceMetaInfoList)) {
-                throw new RuntimeException("暂无服务地址");
-            }
+            List<ServiceMetaInfo> serviceMetaInfoList = discover();
 
             //负载均衡
-            LoadBalancer loadBalancer = LoadBalancerFactory.getInstance(rpcConfig.getLoadBalance());
-            //将调用方法名（请求路径）和客户端IP作为负载均衡参数
-            Map<String,Object> requestParams = new HashMap<>();
-            requestParams.put("methodName",rpcRequest.getMethodName());
-            requestParams.put("clientIp",getClientIp());
-            ServiceMetaInfo selectedServiceMetaInfo = loadBalancer.select(requestParams, serviceMetaInfoList);
-            System.out.println("负载均衡选择服务：" + selectedServiceMetaInfo);
-            
+            ServiceMetaInfo selectedServiceMetaInfo = loadBalancer.select(buildRequestParams(rpcRequest), serviceMetaInfoList);
+            log.debug("负载均衡选择服务：{}", selectedServiceMetaInfo);
+
             // 在发起 RPC 调用前,如果使用最少活跃数负载均衡器,增加活跃数计数
             if (loadBalancer instanceof LeastActiveLoadBalancer) {
                 ((LeastActiveLoadBalancer) loadBalancer)
@@ -110,11 +197,7 @@ public class ServiceProxy implements InvocationHandler {
             }
             RpcResponse rpcResponse = null;
             try {
-                // 发送 TCP 请求
-                System.out.println("开始调用服务：" + selectedServiceMetaInfo);
-                //使用重试机制
-                RetryStrategy retryStrategy= RetryStrategyFactory.getInstance(rpcConfig.getRetryStrategy());
-                System.out.println("使用重试策略：" + retryStrategy);
+                // 发送 TCP 请求，使用重试机制
                 //单行lamda可以省略大括号和return，如果省略了必须也得省略分号
                 rpcResponse =retryStrategy.doRetry(()->
                     VertxTcpClient.doRequest(rpcRequest,selectedServiceMetaInfo)
@@ -122,16 +205,11 @@ public class ServiceProxy implements InvocationHandler {
                 return rpcResponse.getData();
             } catch (Exception e){
                 // 构建容错策略的上下文信息
-                Map<String, Object> tolerantContext = new HashMap<>();
-                tolerantContext.put("method", method);
-                tolerantContext.put("args", args);
-                tolerantContext.put("serviceMetaInfo", selectedServiceMetaInfo);
-                tolerantContext.put("serviceMetaInfoList", serviceMetaInfoList);
-                tolerantContext.put("rpcRequest", rpcRequest); // 添加 rpcRequest，用于 Fail-Over 重试
+                Map<String, Object> tolerantContext = buildTolerantContext(method, args, rpcRequest,
+                        selectedServiceMetaInfo, serviceMetaInfoList);
                 // 可选：如果有降级服务实例，可以放入 context
                 // tolerantContext.put("fallbackService", fallbackServiceInstance);
-                
-                TolerantStrategy tolerantStrategy= TolerantStrategyFactory.getInstance(RpcApplication.getRpcConfig().getTolerantStrategy());
+
                 rpcResponse=tolerantStrategy.doTolerant(tolerantContext, e);
             }
             finally {
@@ -141,11 +219,148 @@ public class ServiceProxy implements InvocationHandler {
                         .decreaseActive(selectedServiceMetaInfo.getServiceAddress());
                 }
             }
-            
+
             // 返回响应结果（可能是正常响应或降级响应）
             return rpcResponse != null ? rpcResponse.getData() : null;
         } catch (Exception e) {
             throw new RuntimeException("调用失败");
         }
     }
+
+    /**
+     * 异步调用：发送请求后立即返回，失败时才在后台线程执行重试和容错
+     *
+     * @param method
+     * @param args
+     * @param rpcRequest
+     * @return 调用结果 future
+     */
+    private CompletableFuture<Object> doInvokeAsync(Method method, Object[] args, RpcRequest rpcRequest) {
+        List<ServiceMetaInfo> serviceMetaInfoList;
+        ServiceMetaInfo selectedServiceMetaInfo;
+        try {
+            serviceMetaInfoList = discover();
+            selectedServiceMetaInfo = loadBalancer.select(buildRequestParams(rpcRequest), serviceMetaInfoList);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new RuntimeException("调用失败", e));
+        }
+        if (loadBalancer instanceof LeastActiveLoadBalancer) {
+            ((LeastActiveLoadBalancer) loadBalancer)
+                .increaseActive(selectedServiceMetaInfo.getServiceAddress());
+        }
+        return VertxTcpClient.doRequestAsync(rpcRequest, selectedServiceMetaInfo)
+                .handle((rpcResponse, e) -> {
+                    if (e == null) {
+                        return CompletableFuture.completedFuture(rpcResponse);
+                    }
+                    Map<String, Object> tolerantContext = buildTolerantContext(method, args, rpcRequest,
+                            selectedServiceMetaInfo, serviceMetaInfoList);
+                    return doFallbackAsync(tolerantContext, rpcRequest, selectedServiceMetaInfo, e);
+                })
+                .thenCompose(future -> future)
+                .whenComplete((rpcResponse, e) -> {
+                    // 整个调用链（包括重试和容错）结束后减少活跃数
+                    if (loadBalancer instanceof LeastActiveLoadBalancer) {
+                        ((LeastActiveLoadBalancer) loadBalancer)
+                            .decreaseActive(selectedServiceMetaInfo.getServiceAddress());
+                    }
+                })
+                .thenCompose(rpcResponse -> {
+                    if (rpcResponse != null && rpcResponse.getException() != null) {
+                        return CompletableFuture.failedFuture(rpcResponse.getException());
+                    }
+                    return CompletableFuture.completedFuture(rpcResponse != null ? rpcResponse.getData() : null);
+                });
+    }
+
+    /**
+     * 首次请求失败后，在后台线程执行重试和容错（这两类策略都是阻塞实现）
+     */
+    private CompletableFuture<RpcResponse> doFallbackAsync(Map<String, Object> tolerantContext,
+                                                           RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo,
+                                                           Throwable cause) {
+        Exception firstException = cause instanceof CompletionException && cause.getCause() instanceof Exception
+                ? (Exception) cause.getCause()
+                : (cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                // 首次请求已经异步发出，算作重试策略的第一次尝试，总尝试次数与同步调用一致
+                boolean[] firstAttempt = {true};
+                try {
+                    return retryStrategy.doRetry(() -> {
+                        if (firstAttempt[0]) {
+                            firstAttempt[0] = false;
+                            throw firstException;
+                        }
+                        return VertxTcpClient.doRequest(rpcRequest, serviceMetaInfo);
+                    });
+                } catch (Exception e) {
+                    return tolerantStrategy.doTolerant(tolerantContext, e);
+                }
+            }, FALLBACK_EXECUTOR);
+        } catch (RejectedExecutionException e) {
+            log.warn("异步调用降级线程池已满，不再重试和容错: {}", rpcRequest.getServiceName());
+            return CompletableFuture.failedFuture(firstException);
+        }
+    }
+
+    private static ThreadPoolExecutor createFallbackExecutor() {
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(FALLBACK_THREADS, FALLBACK_THREADS,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(FALLBACK_QUEUE_CAPACITY),
+                ThreadUtil.newNamedThreadFactory("rpc-async-fallback-", true));
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    /**
+     * 从注册中心获取服务提供者地址
+     */
+    private List<ServiceMetaInfo> discover() {
+        List<ServiceMetaInfo> serviceMetaInfoList = registry.serviceDiscovery(serviceKey);
+        if (CollUtil.isEmpty(serviceMetaInfoList)) {
+            throw new RuntimeException("暂无服务地址");
+        }
+        return serviceMetaInfoList;
+    }
+
+    /**
+     * 将调用方法名（请求路径）和客户端IP作为负载均衡参数
+     */
+    private Map<String, Object> buildRequestParams(RpcRequest rpcRequest) {
+        Map<String,Object> requestParams = new HashMap<>();
+        requestParams.put("methodName",rpcRequest.getMethodName());
+        requestParams.put("clientIp",CLIENT_IP);
+        return requestParams;
+    }
+
+    /**
+     * 构建容错策略的上下文信息
+     */
+    private Map<String, Object> buildTolerantContext(Method method, Object[] args, RpcRequest rpcRequest,
+                                                     ServiceMetaInfo serviceMetaInfo,
+                                                     List<ServiceMetaInfo> serviceMetaInfoList) {
+        Map<String, Object> tolerantContext = new HashMap<>();
+        tolerantContext.put("method", method);
+        tolerantContext.put("args", args);
+        tolerantContext.put("serviceMetaInfo", serviceMetaInfo);
+        tolerantContext.put("serviceMetaInfoList", serviceMetaInfoList);
+        tolerantContext.put("rpcRequest", rpcRequest); // 添加 rpcRequest，用于 Fail-Over 重试
+        return tolerantContext;
+    }
+
+    /**
+     * 处理 Object 的方法（equals、hashCode、toString）
+     */
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "RpcProxy[" + serviceClass.getName() + "]";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
 }
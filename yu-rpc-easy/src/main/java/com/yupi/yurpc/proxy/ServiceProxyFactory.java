@@ -6,17 +6,30 @@ import java.lang.reflect.Proxy;
 
 /**
  * 服务代理工厂（用于创建对象）
+ * 代理创建时即解析好方法描述和各类策略，调用时不再重复查找
  */
 public class ServiceProxyFactory {
 
     public static <T> T getProxy(Class<T> serviceClass){
+        return getProxy(serviceClass, 0);
+    }
+
+    /**
+     * 创建代理并指定服务级超时时间
+     *
+     * @param serviceClass
+     * @param timeout      超时时间（毫秒），0 表示使用配置
+     * @param <T>
+     * @return
+     */
+    public static <T> T getProxy(Class<T> serviceClass, long timeout){
         //Data注解关于boolean的类型生成的是isXXX
         if(RpcApplication.getRpcConfig().isMock())
             return getMockProxy(serviceClass);
         return (T) Proxy.newProxyInstance(
                 serviceClass.getClassLoader(),
                 new Class[]{serviceClass},
-                new ServiceProxy());
+                new ServiceProxy(serviceClass, timeout));
     }
 
     private static <T> T getMockProxy(Class<T> serviceClass) {
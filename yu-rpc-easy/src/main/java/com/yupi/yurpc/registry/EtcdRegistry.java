@@ -1,25 +1,28 @@
 package com.yupi.yurpc.registry;
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ConcurrentHashSet;
-import cn.hutool.cron.CronUtil;
-import cn.hutool.cron.task.Task;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yurpc.config.RegistryConfig;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import io.etcd.jetcd.*;
+import io.etcd.jetcd.common.exception.CompactedException;
 import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
 import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.support.CloseableClient;
 import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import io.grpc.stub.StreamObserver;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class EtcdRegistry implements Registry{
@@ -60,22 +63,33 @@ public class EtcdRegistry implements Registry{
     public void init(RegistryConfig registryConfig) {
         client=Client.builder().endpoints(registryConfig.getAddress()).connectTimeout(Duration.ofMillis(registryConfig.getTimeout()))
                 .build();
-        kvClient=client.getKVClient();                                                                                                                                                                                                                  
-        heartBeat();
+        kvClient=client.getKVClient();
     }
 
-    /** 
-     * 本地注册的节点集合
+    /**
+     * 本地注册的节点 key => 节点信息（JSON），租约丢失后据此重新写入
+     */
+    private final Map<String, String> localRegisterNodeMap=new ConcurrentHashMap<>();
+
+    /**
+     * 租约过期时间（秒）
+     */
+    private static final long LEASE_TTL=30L;
+
+    /**
+     * 本进程共享的租约，所有本地注册的节点都挂在该租约上，0 表示尚未创建
+     */
+    private volatile long leaseId=0L;
+
+    /**
+     * 共享租约的续约流
      */
-    private final Set<String> localRegisterNodeKeySet=new HashSet<>();
-    
+    private CloseableClient keepAliveClient;
+
     @Override
     public void register(ServiceMetaInfo serviceMetaInfo) throws Exception {
-        //创建Lease和KV客户端
-        Lease leaseClient=client.getLeaseClient();
-
-        //创建一个30秒的租约
-        long leaseId=leaseClient.grant(30).get().getID();
+        //获取共享租约（首次注册时创建并开启续约）
+        long leaseId=obtainLease();
 
         //设置注册时间和更新时间
         if (serviceMetaInfo.getRegisterTime() == null) {
@@ -86,15 +100,16 @@ public class EtcdRegistry implements Registry{
         //设置要存储的键值对
         String registerKey=ETCD_ROOT_PATH+serviceMetaInfo.getServiceNodeKey();
         ByteSequence key=ByteSequence.from(registerKey, StandardCharsets.UTF_8);
-        ByteSequence value=ByteSequence.from(JSONUtil.toJsonStr(serviceMetaInfo), StandardCharsets.UTF_8);
+        String json=JSONUtil.toJsonStr(serviceMetaInfo);
+        ByteSequence value=ByteSequence.from(json, StandardCharsets.UTF_8);
 
-        //将键值对与租约关联起来，并设置过期时间
+        //将键值对与共享租约关联起来
         PutOption putOption=PutOption.builder().withLeaseId(leaseId).build();
         kvClient.put(key,value,putOption).get();
         System.out.println("服务注册成功，key = " + registerKey);
 
         //添加节点信息到本地缓存
-        localRegisterNodeKeySet.add(registerKey);
+        localRegisterNodeMap.put(registerKey,json);
     }
 
     @Override
@@ -102,7 +117,7 @@ public class EtcdRegistry implements Registry{
         String deleteKey = ETCD_ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
         try {
             kvClient.delete(ByteSequence.from(deleteKey, StandardCharsets.UTF_8)).get();
-            localRegisterNodeKeySet.remove(deleteKey);
+            localRegisterNodeMap.remove(deleteKey);
             System.out.println("服务注销成功，key = " + deleteKey);
         } catch (Exception e) {
             throw new RuntimeException("服务注销失败", e);
@@ -116,55 +131,65 @@ public class EtcdRegistry implements Registry{
  
     @Override
     public List<ServiceMetaInfo> serviceDiscovery(String serviceKey) {
-        //优先从缓存获取服务
-        List<ServiceMetaInfo>cachedServiceMetaInfoList=registryServiceCache.readCache();
-        if(CollUtil.isNotEmpty(cachedServiceMetaInfoList)){
-            System.out.println("【服务发现】从缓存获取服务: " + serviceKey + " -> " + cachedServiceMetaInfoList.size() + "个实例");
+        //优先从缓存获取服务（由前缀监听增量维护，空列表也是有效结果）
+        List<ServiceMetaInfo>cachedServiceMetaInfoList=registryServiceCache.readCache(serviceKey);
+        if(cachedServiceMetaInfoList!=null){
             return cachedServiceMetaInfoList;
         }
-        
-        System.out.println("【服务发现】缓存未命中，查询注册中心: " + serviceKey);
-        //前缀搜索，结尾一定要加/
-        String searchPrefix=ETCD_ROOT_PATH+serviceKey+"/";
-        GetOption getOption=GetOption.builder().isPrefix(true).build();
-        try {
-            List<KeyValue> keyValues=kvClient.get(ByteSequence.from(searchPrefix, StandardCharsets.UTF_8),getOption)
-                    .get()
-                    .getKvs();
-            System.out.println("【服务发现】从Etcd查询到 " + keyValues.size() + " 个服务节点");
-            
-            //解析服务信息
-                List<ServiceMetaInfo>serviceMetaInfoList=keyValues.stream()
-                        .map(keyValue->{
-                            String key=keyValue.getKey().toString(StandardCharsets.UTF_8);
-                            //监听key的变化
-                            watch(key);
-                            String value=keyValue.getValue().toString(StandardCharsets.UTF_8);
-                            ServiceMetaInfo serviceMetaInfo = JSONUtil.toBean(value,ServiceMetaInfo.class);
-                            System.out.println("  - 节点: " + serviceMetaInfo.getServiceHost() + ":" + serviceMetaInfo.getServicePort());
-                            return serviceMetaInfo;
-            }).collect(Collectors.toList());
-            //写入服务缓存
-            registryServiceCache.writeCache(serviceMetaInfoList);
-            System.out.println("【服务发现】已写入缓存，共 " + serviceMetaInfoList.size() + " 个实例");
-            return serviceMetaInfoList;
-        } catch (Exception e) {
-            throw new RuntimeException("获取列表服务失败",e);
+        synchronized (this){
+            cachedServiceMetaInfoList=registryServiceCache.readCache(serviceKey);
+            if(cachedServiceMetaInfoList!=null){
+                return cachedServiceMetaInfoList;
+            }
+            System.out.println("【服务发现】缓存未命中，查询注册中心: " + serviceKey);
+            try {
+                return syncService(serviceKey);
+            } catch (Exception e) {
+                throw new RuntimeException("获取列表服务失败",e);
+            }
         }
     }
 
+    /**
+     * 全量同步服务节点，并从查询时的版本之后开始前缀监听
+     * @param serviceKey
+     * @return
+     */
+    private List<ServiceMetaInfo> syncService(String serviceKey) throws Exception {
+        GetOption getOption=GetOption.builder().isPrefix(true).build();
+        GetResponse getResponse=kvClient.get(buildServicePrefix(serviceKey),getOption).get();
+        System.out.println("【服务发现】从Etcd查询到 " + getResponse.getKvs().size() + " 个服务节点");
+        //解析服务信息
+        List<ServiceMetaInfo>serviceMetaInfoList=getResponse.getKvs().stream()
+                .map(keyValue->JSONUtil.toBean(keyValue.getValue().toString(StandardCharsets.UTF_8),ServiceMetaInfo.class))
+                .collect(Collectors.toList());
+        //写入服务缓存
+        long revision=getResponse.getHeader().getRevision();
+        registryServiceCache.writeCache(serviceKey,serviceMetaInfoList);
+        serviceRevisionMap.put(serviceKey,revision);
+        //从下一个版本开始监听，查询与监听之间的变化不会丢失
+        startWatch(serviceKey,revision+1);
+        return serviceMetaInfoList;
+    }
+
     @Override
     public void destroy() {
         System.out.println("当前节点下线");
         //下线节点
         //遍历本节点所有的key
-        for(String key:localRegisterNodeKeySet){
+        for(String key:localRegisterNodeMap.keySet()){
             try {
                 kvClient.delete(ByteSequence.from(key, StandardCharsets.UTF_8)).get();
             } catch (Exception e) {
                 throw new RuntimeException(key+"节点下线失败");
             }
         }
+        localRegisterNodeMap.clear();
+        // 停止监听和续约
+        destroyed=true;
+        releaseLease(true);
+        serviceWatcherMap.values().forEach(Watch.Watcher::close);
+        serviceWatcherMap.clear();
         // 释放资源
         if (kvClient != null) {
             kvClient.close();
@@ -173,71 +198,219 @@ public class EtcdRegistry implements Registry{
             client.close();
         }
     }
+    /**
+     * 心跳检测：为共享租约开启 keepAlive 续约流，由 etcd 客户端按 TTL 自动续约
+     * 无论本进程注册了多少服务，都只有一个租约和一条续约流
+     */
     @Override
     public void heartBeat() {
-        //10秒续签一次
-        CronUtil.schedule("*/10 * * * * *",new Task(){
+        try {
+            obtainLease();
+        } catch (Exception e) {
+            throw new RuntimeException("创建租约失败",e);
+        }
+    }
+
+    /**
+     * 获取共享租约，不存在时创建并开启续约
+     * @return 租约 id
+     */
+    private synchronized long obtainLease() throws Exception {
+        if(leaseId!=0L){
+            return leaseId;
+        }
+        Lease leaseClient=client.getLeaseClient();
+        long newLeaseId=leaseClient.grant(LEASE_TTL).get().getID();
+        keepAliveClient=leaseClient.keepAlive(newLeaseId,new StreamObserver<LeaseKeepAliveResponse>() {
             @Override
-            public void execute() {
-                //遍历本节点所有的key
-                for(String key:localRegisterNodeKeySet){
-                    try {
-                        List<KeyValue> keyValues=kvClient.get(ByteSequence.from(key, StandardCharsets.UTF_8))
-                                .get()
-                                .getKvs();
-                        //该节点已经过期（需重启节点才能重新注册)
-                        if(CollUtil.isEmpty(keyValues)){
-                            continue;
-                        }
-                        //节点未过期，重新注册（相当于续签）
-                        KeyValue keyValue=keyValues.get(0);
-                        String value=keyValue.getValue().toString(StandardCharsets.UTF_8);
-                        ServiceMetaInfo serviceMetaInfo=JSONUtil.toBean(value,ServiceMetaInfo.class);
-                        //续签时保留原来的注册时间，只更新 updateTime
-                        //register 方法会自动处理：如果 registerTime 不为空则保留，只更新 updateTime
-                        register(serviceMetaInfo);
-                    } catch (Exception e) {
-                        throw new RuntimeException(key+"续签失败",e);
-                    }
-                }
+            public void onNext(LeaseKeepAliveResponse response) {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                onLeaseLost(newLeaseId,e);
+            }
+
+            @Override
+            public void onCompleted() {
+                onLeaseLost(newLeaseId,null);
             }
         });
-        //支持秒级别定时任务
-        CronUtil.setMatchSecond(true);
-        CronUtil.start();
+        leaseId=newLeaseId;
+        System.out.println("【租约】创建共享租约: " + newLeaseId);
+        return newLeaseId;
+    }
+
+    /**
+     * 租约丢失（已过期或续约流结束），稍后重新创建租约并写回本地注册的所有节点
+     * @param lostLeaseId 丢失的租约
+     * @param e
+     */
+    private void onLeaseLost(long lostLeaseId,Throwable e) {
+        synchronized (this){
+            //已经被替换过的旧租约，忽略
+            if(leaseId!=lostLeaseId){
+                return;
+            }
+            //不撤销：节点会随旧租约过期，或在重新写入时挂到新租约上
+            releaseLease(false);
+        }
+        if(destroyed){
+            return;
+        }
+        System.err.println("【租约】共享租约已失效，稍后重新注册本地节点: " + lostLeaseId + (e==null?"":"，原因: " + e.getMessage()));
+        CompletableFuture.runAsync(()->{
+            try {
+                reRegisterLocalNodes();
+            } catch (Exception ex) {
+                onLeaseLost(leaseId,ex);
+            }
+        },CompletableFuture.delayedExecutor(RESYNC_DELAY,TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 使用新租约重新写入本地注册的所有节点
+     */
+    private void reRegisterLocalNodes() throws Exception {
+        long newLeaseId=obtainLease();
+        PutOption putOption=PutOption.builder().withLeaseId(newLeaseId).build();
+        for(Map.Entry<String, String> entry : localRegisterNodeMap.entrySet()){
+            kvClient.put(ByteSequence.from(entry.getKey(), StandardCharsets.UTF_8),
+                    ByteSequence.from(entry.getValue(), StandardCharsets.UTF_8),putOption).get();
+        }
+        System.out.println("【租约】已重新注册 " + localRegisterNodeMap.size() + " 个本地节点");
+    }
+
+    /**
+     * 停止续约并丢弃当前租约
+     * @param revoke 是否撤销租约（撤销后挂在租约上的节点立即删除）
+     */
+    private synchronized void releaseLease(boolean revoke) {
+        long oldLeaseId=leaseId;
+        CloseableClient oldKeepAliveClient=keepAliveClient;
+        leaseId=0L;
+        keepAliveClient=null;
+        if(oldKeepAliveClient!=null){
+            oldKeepAliveClient.close();
+        }
+        if(revoke&&oldLeaseId!=0L){
+            client.getLeaseClient().revoke(oldLeaseId);
+        }
     }
 
     /**
-     * 正在监听的key集合
+     * 正在监听的服务键 => 前缀监听器
+     */
+    private final Map<String, Watch.Watcher> serviceWatcherMap=new ConcurrentHashMap<>();
+
+    /**
+     * 服务键 => 本地缓存对应的 etcd 版本号
+     */
+    private final Map<String, Long> serviceRevisionMap=new ConcurrentHashMap<>();
+
+    /**
+     * 监听断开后重新同步的延迟（毫秒）
      */
-    private final Set<String> watchingKeySet=new ConcurrentHashSet<>();
+    private static final long RESYNC_DELAY=1000L;
+
+    private volatile boolean destroyed=false;
 
+    /**
+     * 监听服务下所有节点的变化（从当前版本开始）
+     * @param serviceKey 服务键
+     */
     @Override
-    public void watch(String serviceNodeKey) {
-        Watch watchClient=client.getWatchClient();
-        //之前未被监听，开启监听
-        boolean newWatch=watchingKeySet.add(serviceNodeKey);
-        if(newWatch){
-            System.out.println("【Watch监听】开始监听节点: " + serviceNodeKey);
-            watchClient.watch(ByteSequence.from(serviceNodeKey, StandardCharsets.UTF_8),response->{
-                    for(WatchEvent event : response.getEvents()){
-                        switch(event.getEventType()){
-                            //key 删除时触发
-                            case DELETE:
-                                System.out.println("【Watch监听】检测到节点删除事件: " + serviceNodeKey);
-                                //清理注册服务缓存
-                                registryServiceCache.clearCache();
-                                System.out.println("【Watch监听】已清空服务缓存");
-                                break;
-                            case PUT:
-                                System.out.println("【Watch监听】检测到节点更新事件: " + serviceNodeKey);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-            });
+    public void watch(String serviceKey) {
+        startWatch(serviceKey,0L);
+    }
+
+    /**
+     * 开启服务前缀监听（每个服务只有一个监听）
+     * @param serviceKey
+     * @param revision 起始版本，0 表示从当前版本开始
+     */
+    private void startWatch(String serviceKey,long revision) {
+        if(serviceWatcherMap.containsKey(serviceKey)){
+            return;
+        }
+        System.out.println("【Watch监听】开始监听服务: " + serviceKey + "，起始版本: " + revision);
+        WatchOption watchOption=WatchOption.builder().isPrefix(true).withRevision(revision).build();
+        Watch.Watcher watcher=client.getWatchClient().watch(buildServicePrefix(serviceKey),watchOption,Watch.listener(
+                response->applyWatchResponse(serviceKey,response),
+                e->onWatchError(serviceKey,e)));
+        if(serviceWatcherMap.putIfAbsent(serviceKey,watcher)!=null){
+            watcher.close();
+        }
+    }
+
+    /**
+     * 把监听到的节点变化应用到本地缓存
+     * @param serviceKey
+     * @param response
+     */
+    private void applyWatchResponse(String serviceKey,WatchResponse response) {
+        for(WatchEvent event : response.getEvents()){
+            KeyValue keyValue=event.getKeyValue();
+            //跳过缓存中已经包含的变化（全量同步后重放的旧事件）
+            long modRevision=keyValue.getModRevision();
+            if(modRevision<=serviceRevisionMap.getOrDefault(serviceKey,0L)){
+                continue;
+            }
+            String registerKey=keyValue.getKey().toString(StandardCharsets.UTF_8);
+            String serviceNodeKey=registerKey.substring(ETCD_ROOT_PATH.length());
+            switch(event.getEventType()){
+                //key 删除时触发，只移除该节点
+                case DELETE:
+                    System.out.println("【Watch监听】检测到节点删除事件: " + registerKey);
+                    registryServiceCache.removeNode(serviceKey,serviceNodeKey);
+                    break;
+                //key 新增或更新时触发，写入该节点信息
+                case PUT:
+                    System.out.println("【Watch监听】检测到节点更新事件: " + registerKey);
+                    String value=keyValue.getValue().toString(StandardCharsets.UTF_8);
+                    registryServiceCache.putNode(serviceKey,JSONUtil.toBean(value,ServiceMetaInfo.class));
+                    break;
+                default:
+                    break;
+            }
+            serviceRevisionMap.put(serviceKey,modRevision);
+        }
+    }
+
+    /**
+     * 监听中断（如历史版本已被压缩），稍后全量同步并重新监听；同步前继续使用现有缓存
+     * @param serviceKey
+     * @param e
+     */
+    private void onWatchError(String serviceKey,Throwable e) {
+        Watch.Watcher watcher=serviceWatcherMap.remove(serviceKey);
+        if(watcher!=null){
+            watcher.close();
+        }
+        if(destroyed){
+            return;
+        }
+        if(e instanceof CompactedException){
+            System.out.println("【Watch监听】历史版本已被压缩，全量同步服务: " + serviceKey);
+        }else{
+            System.err.println("【Watch监听】监听中断，稍后全量同步服务: " + serviceKey + "，原因: " + e.getMessage());
         }
+        CompletableFuture.runAsync(()->{
+            try {
+                syncService(serviceKey);
+            } catch (Exception ex) {
+                onWatchError(serviceKey,ex);
+            }
+        },CompletableFuture.delayedExecutor(RESYNC_DELAY,TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 服务前缀，结尾一定要加/
+     * @param serviceKey
+     * @return
+     */
+    private ByteSequence buildServicePrefix(String serviceKey) {
+        return ByteSequence.from(ETCD_ROOT_PATH+serviceKey+"/", StandardCharsets.UTF_8);
     }
 
 }
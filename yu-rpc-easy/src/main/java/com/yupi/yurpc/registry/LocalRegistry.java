@@ -1,24 +1,43 @@
 package com.yupi.yurpc.registry;
 
+import com.yupi.yurpc.server.invoker.MethodInvoker;
+import com.yupi.yurpc.server.invoker.ServiceInvoker;
+
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 本地注册中心
+ * 注册时创建（或接收）唯一的服务实例，并预先构建方法调用器
  */
 public class LocalRegistry {
     /**
      * 注册信息存储
      */
-    private static final Map<String,Class<?>> map=new ConcurrentHashMap<>();
+    private static final Map<String,ServiceInvoker> map=new ConcurrentHashMap<>();
 
     /**
-     * 注册
+     * 注册（由框架创建服务实例）
      * @param serviceName
      * @param implClass
      */
     public static void register(String serviceName,Class<?>implClass){
-            map.put(serviceName,implClass);
+        Object serviceInstance;
+        try {
+            serviceInstance=implClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(serviceName+" 服务实例化失败",e);
+        }
+        map.put(serviceName,new ServiceInvoker(implClass,serviceInstance));
+    }
+
+    /**
+     * 注册（使用已有的服务实例，如 Spring Bean）
+     * @param serviceName
+     * @param serviceInstance
+     */
+    public static void register(String serviceName,Object serviceInstance){
+        map.put(serviceName,new ServiceInvoker(serviceInstance.getClass(),serviceInstance));
     }
 
     /**
@@ -27,9 +46,38 @@ public class LocalRegistry {
      * @return
      */
     public static Class<?> get(String serviceName){
+        ServiceInvoker serviceInvoker=map.get(serviceName);
+        return serviceInvoker==null?null:serviceInvoker.getServiceClass();
+    }
+
+    /**
+     * 获取服务调用器
+     * @param serviceName
+     * @return
+     */
+    public static ServiceInvoker getInvoker(String serviceName){
         return map.get(serviceName);
     }
 
+    /**
+     * 获取方法调用器
+     * @param serviceName
+     * @param methodName
+     * @param parameterTypes
+     * @return
+     */
+    public static MethodInvoker getMethodInvoker(String serviceName,String methodName,Class<?>[] parameterTypes){
+        ServiceInvoker serviceInvoker=map.get(serviceName);
+        if(serviceInvoker==null){
+            throw new RuntimeException("服务未注册: "+serviceName);
+        }
+        MethodInvoker methodInvoker=serviceInvoker.getMethodInvoker(methodName,parameterTypes);
+        if(methodInvoker==null){
+            throw new RuntimeException("服务方法不存在: "+serviceName+"."+methodName);
+        }
+        return methodInvoker;
+    }
+
     /**
      * 删除服务
      * @param serviceName
@@ -1,6 +1,5 @@
 package com.yupi.yurpc.registry;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ConcurrentHashSet;
 import cn.hutool.cron.CronUtil;
 import cn.hutool.cron.task.Task;
@@ -12,20 +11,28 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Redis 注册中心实现
  * 
  * 设计思路：
- * 1. 使用 Redis String 类型存储服务信息，key 为服务节点路径，value 为 JSON
- * 2. 使用 EXPIRE 设置过期时间（30秒），模拟临时节点
- * 3. 通过定时任务（每10秒）续期，保持服务在线
- * 4. 使用 Redis Pub/Sub 实现服务变更监听
- * 5. 使用本地缓存提升查询性能
+ * 1. 每个服务一个 Hash（节点键 => 服务信息 JSON），一个 ZSet（节点键 => 过期时间戳）
+ * 2. 服务发现通过一次 pipeline 同时读取 Hash 和未过期的节点，不使用 KEYS
+ * 3. 心跳（每10秒）只刷新 ZSet 中的过期时间，不发布事件；同时清理已过期的节点
+ * 4. 每个服务一个事件频道，只在节点新增、删除时发布增量事件（PUT / DEL）
+ * 5. 消费端按事件增量更新本地缓存，不整体失效
  */
 @Slf4j
 public class  RedisRegistry implements Registry {
@@ -40,15 +47,35 @@ public class  RedisRegistry implements Registry {
      */
     private static final String REDIS_ROOT_PATH = "/rpc/";
 
+    /**
+     * 节点过期时间 ZSet 的后缀
+     */
+    private static final String EXPIRE_SUFFIX = ":expire";
+
+    /**
+     * 服务事件频道前缀（频道名 = 前缀 + 服务键）
+     */
+    private static final String EVENT_CHANNEL_PREFIX = "rpc:event:";
+
+    /**
+     * 节点新增或更新事件，消息体为服务信息 JSON
+     */
+    private static final String EVENT_PUT = "PUT";
+
+    /**
+     * 节点删除事件，消息体为节点键
+     */
+    private static final String EVENT_DEL = "DEL";
+
     /**
      * 服务过期时间（秒）
      */
     private static final int SERVICE_EXPIRE_TIME = 30;
 
     /**
-     * 本地注册的节点 key 集合（用于维护续期）
+     * 本地注册的节点键 => 服务信息（用于维护续期）
      */
-    private final Set<String> localRegisterNodeKeySet = new ConcurrentHashSet<>();
+    private final Map<String, ServiceMetaInfo> localRegisterNodeMap = new ConcurrentHashMap<>();
 
     /**
      * 注册中心服务缓存
@@ -56,7 +83,7 @@ public class  RedisRegistry implements Registry {
     private final RegistryServiceCache registryServiceCache = new RegistryServiceCache();
 
     /**
-     * 正在监听的 key 集合
+     * 正在监听的服务键集合
      */
     private final Set<String> watchingKeySet = new ConcurrentHashSet<>();
 
@@ -65,6 +92,21 @@ public class  RedisRegistry implements Registry {
      */
     private Thread watchThread;
 
+    /**
+     * 监听线程的订阅，下线时取消订阅让 psubscribe 返回
+     */
+    private JedisPubSub watchPubSub;
+
+    /**
+     * 当前监听线程的订阅结果，订阅生效后完成
+     */
+    private CompletableFuture<Void> subscribeFuture;
+
+    /**
+     * 等待订阅生效的超时时间（毫秒）
+     */
+    private static final long SUBSCRIBE_TIMEOUT = 3000L;
+
     @Override
     public void init(RegistryConfig registryConfig) {
         // 解析 Redis 地址（格式：host:port 或 host:port:password）
@@ -102,81 +144,73 @@ public class  RedisRegistry implements Registry {
         }
         serviceMetaInfo.setUpdateTime(System.currentTimeMillis());
 
-        // 构建 Redis key
-        String registerKey = REDIS_ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
-
-        // 序列化服务信息为 JSON
-        String serviceJson = JSONUtil.toJsonStr(serviceMetaInfo);
-
-        // 存储到 Redis，并设置过期时间
+        // 写入服务 Hash 和过期时间，并发布节点新增事件
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.setex(registerKey, SERVICE_EXPIRE_TIME, serviceJson);
-            
-            // 发布服务注册事件（用于通知监听者）
-            jedis.publish("service:register", registerKey);
+            putNode(jedis, serviceMetaInfo);
         }
 
         // 添加到本地缓存
-        localRegisterNodeKeySet.add(registerKey);
+        localRegisterNodeMap.put(serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo);
 
-        log.info("服务注册成功: {} -> {}", registerKey, serviceMetaInfo.getServiceAddress());
+        log.info("服务注册成功: {} -> {}", serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo.getServiceAddress());
     }
 
     @Override
     public void unRegister(ServiceMetaInfo serviceMetaInfo) {
-        String registerKey = REDIS_ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
+        String serviceKey = serviceMetaInfo.getServiceKey();
+        String nodeKey = serviceMetaInfo.getServiceNodeKey();
 
         try (Jedis jedis = jedisPool.getResource()) {
-            // 删除 Redis 中的服务信息
-            jedis.del(registerKey);
-            
-            // 发布服务注销事件
-            jedis.publish("service:unregister", registerKey);
+            // 删除节点并发布节点删除事件
+            removeNode(jedis, serviceKey, nodeKey);
         }
 
         // 从本地缓存移除
-        localRegisterNodeKeySet.remove(registerKey);
+        localRegisterNodeMap.remove(nodeKey);
 
-        log.info("服务注销成功: {}", registerKey);
+        log.info("服务注销成功: {}", nodeKey);
     }
 
     @Override
     public List<ServiceMetaInfo> serviceDiscovery(String serviceKey) {
-        // 优先从缓存获取服务
-        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceCache.readCache();
-        if (CollUtil.isNotEmpty(cachedServiceMetaInfoList)) {
+        // 优先从缓存获取服务（由事件增量维护，空列表也是有效结果）
+        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceCache.readCache(serviceKey);
+        if (cachedServiceMetaInfoList != null) {
             log.debug("【服务发现】从缓存获取服务: {} -> {} 个实例", serviceKey, cachedServiceMetaInfoList.size());
             return cachedServiceMetaInfoList;
         }
 
         log.debug("【服务发现】缓存未命中，查询 Redis: {}", serviceKey);
 
-        // 从 Redis 查询服务
-        String searchPattern = REDIS_ROOT_PATH + serviceKey + "/*";
-        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        // 先订阅（等待订阅生效）再查询，避免漏掉查询期间的变化
+        watch(serviceKey);
 
         try (Jedis jedis = jedisPool.getResource()) {
-            // 使用 SCAN 命令查找匹配的 key（更安全，不会阻塞 Redis）
-            Set<String> keys = jedis.keys(searchPattern);
-
-            log.debug("【服务发现】从 Redis 查询到 {} 个服务节点", keys.size());
-
-            // 批量获取服务信息
-            for (String key : keys) {
-                String serviceJson = jedis.get(key);
-                if (serviceJson != null) {
-                    ServiceMetaInfo serviceMetaInfo = JSONUtil.toBean(serviceJson, ServiceMetaInfo.class);
-                    serviceMetaInfoList.add(serviceMetaInfo);
-                    
-                    // 监听这个 key 的变化
-                    watch(key);
-                    
-                    log.debug("  - 节点: {}", serviceMetaInfo.getServiceAddress());
+            // 一次往返同时读取节点信息和未过期的节点
+            Pipeline pipeline = jedis.pipelined();
+            Response<Map<String, String>> nodeResponse = pipeline.hgetAll(buildServiceKey(serviceKey));
+            Response<List<String>> aliveResponse = pipeline.zrangeByScore(buildExpireKey(serviceKey),
+                    System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            pipeline.sync();
+
+            Map<String, String> nodeMap = nodeResponse.get();
+            Set<String> aliveNodeKeySet = new HashSet<>(aliveResponse.get());
+            List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+            for (Map.Entry<String, String> entry : nodeMap.entrySet()) {
+                // 跳过已过期但还未被清理的节点
+                if (!aliveNodeKeySet.contains(entry.getKey())) {
+                    continue;
                 }
+                ServiceMetaInfo serviceMetaInfo = JSONUtil.toBean(entry.getValue(), ServiceMetaInfo.class);
+                serviceMetaInfoList.add(serviceMetaInfo);
+                log.debug("  - 节点: {}", serviceMetaInfo.getServiceAddress());
             }
+            log.debug("【服务发现】从 Redis 查询到 {} 个服务节点", serviceMetaInfoList.size());
 
-            // 写入缓存
-            registryServiceCache.writeCache(serviceMetaInfoList);
+            // 写入缓存（订阅未生效时不缓存，缓存只靠事件增量维护，漏掉事件会一直不一致）
+            if (watchingKeySet.contains(serviceKey)) {
+                registryServiceCache.writeCache(serviceKey, serviceMetaInfoList);
+            }
             log.debug("【服务发现】已写入缓存，共 {} 个实例", serviceMetaInfoList.size());
 
             return serviceMetaInfoList;
@@ -192,28 +226,11 @@ public class  RedisRegistry implements Registry {
         CronUtil.schedule("*/10 * * * * *", new Task() {
             @Override
             public void execute() {
-                // 遍历本节点所有的 key
-                for (String key : localRegisterNodeKeySet) {
-                    try (Jedis jedis = jedisPool.getResource()) {
-                        // 获取当前服务信息
-                        String serviceJson = jedis.get(key);
-
-                        if (serviceJson == null) {
-                            // 服务已过期，需要重新注册
-                            log.warn("服务已过期，需要重启: {}", key);
-                            continue;
-                        }
-
-                        // 解析服务信息
-                        ServiceMetaInfo serviceMetaInfo = JSONUtil.toBean(serviceJson, ServiceMetaInfo.class);
-
-                        // 续期：重新注册（保留 registerTime，更新 updateTime）
-                        register(serviceMetaInfo);
-
-                        log.debug("服务续期成功: {}", key);
-                    } catch (Exception e) {
-                        log.error("服务续期失败: {}", key, e);
-                    }
+                try (Jedis jedis = jedisPool.getResource()) {
+                    renewLocalNodes(jedis);
+                    removeExpiredNodes(jedis);
+                } catch (Exception e) {
+                    log.error("服务续期失败", e);
                 }
             }
         });
@@ -225,40 +242,192 @@ public class  RedisRegistry implements Registry {
         log.info("Redis 心跳任务已启动");
     }
 
-    @Override
-    public void watch(String serviceNodeKey) {
-        // 检查是否已经在监听
-        boolean newWatch = watchingKeySet.add(serviceNodeKey);
-        if (!newWatch) {
+    /**
+     * 续期本地注册的节点：只刷新过期时间，不重写服务信息，也不发布事件
+     *
+     * @param jedis
+     */
+    private void renewLocalNodes(Jedis jedis) {
+        if (localRegisterNodeMap.isEmpty()) {
             return;
         }
+        double expireTime = System.currentTimeMillis() + SERVICE_EXPIRE_TIME * 1000L;
+        Map<String, Response<Long>> responseMap = new LinkedHashMap<>();
+        Pipeline pipeline = jedis.pipelined();
+        for (ServiceMetaInfo serviceMetaInfo : localRegisterNodeMap.values()) {
+            responseMap.put(serviceMetaInfo.getServiceNodeKey(), pipeline.zadd(buildExpireKey(serviceMetaInfo.getServiceKey()),
+                    expireTime, serviceMetaInfo.getServiceNodeKey()));
+        }
+        pipeline.sync();
+        for (Map.Entry<String, Response<Long>> entry : responseMap.entrySet()) {
+            ServiceMetaInfo serviceMetaInfo = localRegisterNodeMap.get(entry.getKey());
+            // 新增了成员，说明节点已被当作过期清理，重新注册
+            if (entry.getValue().get() > 0 && serviceMetaInfo != null) {
+                log.warn("服务已过期，重新注册: {}", serviceMetaInfo.getServiceNodeKey());
+                serviceMetaInfo.setUpdateTime(System.currentTimeMillis());
+                putNode(jedis, serviceMetaInfo);
+            }
+        }
+        log.debug("服务续期成功: {} 个节点", responseMap.size());
+    }
 
-        log.info("【Watch监听】开始监听服务变化");
+    /**
+     * 清理本地注册及正在监听的服务中已过期的节点（如提供者宕机），并发布删除事件
+     *
+     * @param jedis
+     */
+    private void removeExpiredNodes(Jedis jedis) {
+        Set<String> serviceKeySet = new HashSet<>(watchingKeySet);
+        for (ServiceMetaInfo serviceMetaInfo : localRegisterNodeMap.values()) {
+            serviceKeySet.add(serviceMetaInfo.getServiceKey());
+        }
+        long now = System.currentTimeMillis();
+        for (String serviceKey : serviceKeySet) {
+            List<String> expiredNodeKeyList = jedis.zrangeByScore(buildExpireKey(serviceKey), Double.NEGATIVE_INFINITY, now);
+            for (String nodeKey : expiredNodeKeyList) {
+                // 只有成功移除的一方负责删除节点并发布事件，避免重复通知
+                if (jedis.zrem(buildExpireKey(serviceKey), nodeKey) > 0) {
+                    log.info("清理过期服务节点: {}", nodeKey);
+                    Pipeline pipeline = jedis.pipelined();
+                    pipeline.hdel(buildServiceKey(serviceKey), nodeKey);
+                    pipeline.publish(EVENT_CHANNEL_PREFIX + serviceKey, EVENT_DEL + " " + nodeKey);
+                    pipeline.sync();
+                }
+            }
+        }
+    }
 
-        // 启动监听线程（如果还未启动）
-        if (watchThread == null || !watchThread.isAlive()) {
-            watchThread = new Thread(() -> {
-                try (Jedis jedis = jedisPool.getResource()) {
-                    // 订阅服务注册和注销事件
-                    jedis.subscribe(new JedisPubSub() {
-                        @Override
-                        public void onMessage(String channel, String message) {
-                            log.info("【Watch监听】接收到事件: {} -> {}", channel, message);
-
-                            // 清空缓存，下次查询时会重新从 Redis 获取
-                            registryServiceCache.clearCache();
-                            log.info("【Watch监听】已清空服务缓存");
+    /**
+     * 写入节点信息和过期时间，并发布节点新增事件（一次往返）
+     *
+     * @param jedis
+     * @param serviceMetaInfo
+     */
+    private void putNode(Jedis jedis, ServiceMetaInfo serviceMetaInfo) {
+        String serviceKey = serviceMetaInfo.getServiceKey();
+        String serviceJson = JSONUtil.toJsonStr(serviceMetaInfo);
+        Pipeline pipeline = jedis.pipelined();
+        pipeline.hset(buildServiceKey(serviceKey), serviceMetaInfo.getServiceNodeKey(), serviceJson);
+        pipeline.zadd(buildExpireKey(serviceKey), System.currentTimeMillis() + SERVICE_EXPIRE_TIME * 1000L,
+                serviceMetaInfo.getServiceNodeKey());
+        pipeline.publish(EVENT_CHANNEL_PREFIX + serviceKey, EVENT_PUT + " " + serviceJson);
+        pipeline.sync();
+    }
+
+    /**
+     * 删除节点信息和过期时间，并发布节点删除事件（一次往返）
+     *
+     * @param jedis
+     * @param serviceKey
+     * @param nodeKey
+     */
+    private void removeNode(Jedis jedis, String serviceKey, String nodeKey) {
+        Pipeline pipeline = jedis.pipelined();
+        pipeline.hdel(buildServiceKey(serviceKey), nodeKey);
+        pipeline.zrem(buildExpireKey(serviceKey), nodeKey);
+        pipeline.publish(EVENT_CHANNEL_PREFIX + serviceKey, EVENT_DEL + " " + nodeKey);
+        pipeline.sync();
+    }
+
+    @Override
+    public void watch(String serviceKey) {
+        if (watchingKeySet.add(serviceKey)) {
+            log.info("【Watch监听】开始监听服务变化: {}", serviceKey);
+        }
+
+        // 启动监听线程（如果还未启动），所有服务的事件频道共用一个订阅连接
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            if (watchThread == null || !watchThread.isAlive()) {
+                CompletableFuture<Void> newSubscribeFuture = new CompletableFuture<>();
+                subscribeFuture = newSubscribeFuture;
+                JedisPubSub pubSub = new JedisPubSub() {
+                    @Override
+                    public void onPSubscribe(String pattern, int subscribedChannels) {
+                        newSubscribeFuture.complete(null);
+                    }
+
+                    @Override
+                    public void onPMessage(String pattern, String channel, String message) {
+                        log.debug("【Watch监听】接收到事件: {} -> {}", channel, message);
+                        applyNodeEvent(channel.substring(EVENT_CHANNEL_PREFIX.length()), message);
+                    }
+                };
+                watchPubSub = pubSub;
+                watchThread = new Thread(() -> {
+                    try (Jedis jedis = jedisPool.getResource()) {
+                        // 订阅所有服务的事件频道，只处理正在监听的服务
+                        jedis.psubscribe(pubSub, EVENT_CHANNEL_PREFIX + "*");
+                    } catch (Exception e) {
+                        log.error("Redis 监听失败", e);
+                    } finally {
+                        newSubscribeFuture.completeExceptionally(new IllegalStateException("Redis 订阅已中断"));
+                        // 订阅中断期间可能丢失事件，清空缓存并取消监听，下次服务发现时重新加载
+                        for (String key : watchingKeySet) {
+                            registryServiceCache.clearCache(key);
                         }
-                    }, "service:register", "service:unregister");
-                } catch (Exception e) {
-                    log.error("Redis 监听失败", e);
-                }
-            });
-            watchThread.setDaemon(true);
-            watchThread.start();
+                        watchingKeySet.clear();
+                    }
+                }, "rpc-redis-watch");
+                watchThread.setDaemon(true);
+                watchThread.start();
+            }
+            future = subscribeFuture;
+        }
+
+        // psubscribe 在监听线程中异步执行，等订阅生效后调用方再查询
+        try {
+            future.get(SUBSCRIBE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // 订阅未生效，取消监听，本次查询结果不缓存
+            log.warn("【Watch监听】订阅未生效: {}", serviceKey, e);
+            watchingKeySet.remove(serviceKey);
         }
     }
 
+    /**
+     * 把节点变化应用到本地缓存（只更新变化的节点）
+     *
+     * @param serviceKey 服务键
+     * @param message    事件（PUT 服务信息JSON / DEL 节点键）
+     */
+    private void applyNodeEvent(String serviceKey, String message) {
+        if (!watchingKeySet.contains(serviceKey)) {
+            return;
+        }
+        int index = message.indexOf(' ');
+        if (index < 0) {
+            return;
+        }
+        String type = message.substring(0, index);
+        String payload = message.substring(index + 1);
+        if (EVENT_PUT.equals(type)) {
+            registryServiceCache.putNode(serviceKey, JSONUtil.toBean(payload, ServiceMetaInfo.class));
+        } else if (EVENT_DEL.equals(type)) {
+            registryServiceCache.removeNode(serviceKey, payload);
+        }
+    }
+
+    /**
+     * 服务节点 Hash 的 key
+     *
+     * @param serviceKey
+     * @return
+     */
+    private static String buildServiceKey(String serviceKey) {
+        return REDIS_ROOT_PATH + serviceKey;
+    }
+
+    /**
+     * 节点过期时间 ZSet 的 key
+     *
+     * @param serviceKey
+     * @return
+     */
+    private static String buildExpireKey(String serviceKey) {
+        return REDIS_ROOT_PATH + serviceKey + EXPIRE_SUFFIX;
+    }
+
     @Override
     public void destroy() {
         log.info("Redis 注册中心开始下线");
@@ -267,18 +436,40 @@ public class  RedisRegistry implements Registry {
         CronUtil.stop();
 
         // 下线所有服务节点
-        for (String key : localRegisterNodeKeySet) {
+        for (ServiceMetaInfo serviceMetaInfo : localRegisterNodeMap.values()) {
             try (Jedis jedis = jedisPool.getResource()) {
-                jedis.del(key);
-                log.info("删除服务节点: {}", key);
+                removeNode(jedis, serviceMetaInfo.getServiceKey(), serviceMetaInfo.getServiceNodeKey());
+                log.info("删除服务节点: {}", serviceMetaInfo.getServiceNodeKey());
             } catch (Exception e) {
-                log.error("删除服务节点失败: {}", key, e);
+                log.error("删除服务节点失败: {}", serviceMetaInfo.getServiceNodeKey(), e);
             }
         }
-
-        // 关闭监听线程
-        if (watchThread != null && watchThread.isAlive()) {
-            watchThread.interrupt();
+        localRegisterNodeMap.clear();
+
+        // 关闭监听线程：psubscribe 阻塞在读取上，中断不起作用，要先取消订阅让它返回
+        Thread thread;
+        JedisPubSub pubSub;
+        synchronized (this) {
+            thread = watchThread;
+            pubSub = watchPubSub;
+        }
+        if (thread != null && thread.isAlive()) {
+            if (pubSub != null && pubSub.isSubscribed()) {
+                try {
+                    pubSub.punsubscribe();
+                } catch (Exception e) {
+                    log.warn("Redis 取消订阅失败", e);
+                }
+            }
+            try {
+                thread.join(SUBSCRIBE_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Redis 监听线程未能及时退出，尝试中断");
+                thread.interrupt();
+            }
         }
 
         // 关闭连接池
@@ -289,4 +480,3 @@ public class  RedisRegistry implements Registry {
         log.info("Redis 注册中心已下线");
     }
 }
-
@@ -2,38 +2,125 @@ package com.yupi.yurpc.registry;
 
 import com.yupi.yurpc.model.ServiceMetaInfo;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 注册中心服务本地缓存
+ * 按服务键分别缓存不可变的节点快照，监听到节点变化时只更新对应服务的单个节点
  */
 public class RegistryServiceCache {
 
     /**
-     * 服务缓存
+     * 服务键 => 节点快照
      */
-    List<ServiceMetaInfo> serviceCache;
+    private final Map<String, Snapshot> serviceCache = new ConcurrentHashMap<>();
 
     /**
-     * 写入缓存
+     * 写入缓存（整体替换）
+     * @param serviceKey
      * @param newServiceCache
      */
-    void writeCache(List<ServiceMetaInfo> newServiceCache){
-        this.serviceCache=newServiceCache;
+    void writeCache(String serviceKey, List<ServiceMetaInfo> newServiceCache) {
+        Map<String, ServiceMetaInfo> nodeMap = new LinkedHashMap<>();
+        for (ServiceMetaInfo serviceMetaInfo : newServiceCache) {
+            nodeMap.put(serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo);
+        }
+        serviceCache.compute(serviceKey, (key, old) -> new Snapshot(old == null ? 1 : old.version + 1, nodeMap));
     }
 
     /**
      * 读取缓存
-     * @return
+     * @param serviceKey
+     * @return 未缓存时返回 null
      */
-    List<ServiceMetaInfo> readCache(){
-        return this.serviceCache;
+    List<ServiceMetaInfo> readCache(String serviceKey) {
+        Snapshot snapshot = serviceCache.get(serviceKey);
+        return snapshot == null ? null : snapshot.serviceMetaInfoList;
+    }
+
+    /**
+     * 获取节点快照
+     * @param serviceKey
+     * @return 未缓存时返回 null
+     */
+    public Snapshot getSnapshot(String serviceKey) {
+        return serviceCache.get(serviceKey);
+    }
+
+    /**
+     * 新增或更新节点（该服务未缓存时忽略，等下次服务发现时整体加载）
+     * @param serviceKey
+     * @param serviceMetaInfo
+     */
+    void putNode(String serviceKey, ServiceMetaInfo serviceMetaInfo) {
+        serviceCache.computeIfPresent(serviceKey, (key, old) -> {
+            Map<String, ServiceMetaInfo> nodeMap = new LinkedHashMap<>(old.nodeMap);
+            nodeMap.put(serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo);
+            return new Snapshot(old.version + 1, nodeMap);
+        });
+    }
+
+    /**
+     * 移除节点
+     * @param serviceKey
+     * @param serviceNodeKey
+     */
+    void removeNode(String serviceKey, String serviceNodeKey) {
+        serviceCache.computeIfPresent(serviceKey, (key, old) -> {
+            if (!old.nodeMap.containsKey(serviceNodeKey)) {
+                return old;
+            }
+            Map<String, ServiceMetaInfo> nodeMap = new LinkedHashMap<>(old.nodeMap);
+            nodeMap.remove(serviceNodeKey);
+            return new Snapshot(old.version + 1, nodeMap);
+        });
+    }
+
+    /**
+     * 清空指定服务的缓存
+     * @param serviceKey
+     */
+    void clearCache(String serviceKey) {
+        serviceCache.remove(serviceKey);
     }
 
     /**
      * 清空缓存
      */
-    void clearCache(){
-        this.serviceCache=null;
+    void clearCache() {
+        serviceCache.clear();
+    }
+
+    /**
+     * 服务节点快照（不可变）
+     */
+    public static class Snapshot {
+
+        /**
+         * 版本号，每次变化加一
+         */
+        private final long version;
+
+        /**
+         * 服务节点键 => 服务信息
+         */
+        private final Map<String, ServiceMetaInfo> nodeMap;
+
+        private final List<ServiceMetaInfo> serviceMetaInfoList;
+
+        private Snapshot(long version, Map<String, ServiceMetaInfo> nodeMap) {
+            this.version = version;
+            this.nodeMap = Collections.unmodifiableMap(nodeMap);
+            this.serviceMetaInfoList = Collections.unmodifiableList(new ArrayList<>(nodeMap.values()));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<ServiceMetaInfo> getServiceMetaInfoList() {
+            return serviceMetaInfoList;
+        }
     }
 }
@@ -57,6 +57,11 @@ public class ZooKeeperRegistry implements Registry {
      */
     private static final String ZK_ROOT_PATH = "/rpc/zk";
 
+    /**
+     * 服务实例序列化器
+     */
+    private final JsonInstanceSerializer<ServiceMetaInfo> instanceSerializer = new JsonInstanceSerializer<>(ServiceMetaInfo.class);
+
 
     @Override
     public void init(RegistryConfig registryConfig) {
@@ -71,7 +76,7 @@ public class ZooKeeperRegistry implements Registry {
         serviceDiscovery = ServiceDiscoveryBuilder.builder(ServiceMetaInfo.class)
                 .client(client)
                 .basePath(ZK_ROOT_PATH)
-                .serializer(new JsonInstanceSerializer<>(ServiceMetaInfo.class))
+                .serializer(instanceSerializer)
                 .build();
 
         try {
@@ -114,7 +119,7 @@ public class ZooKeeperRegistry implements Registry {
     @Override
     public List<ServiceMetaInfo> serviceDiscovery(String serviceKey) {
         // 优先从缓存获取服务
-        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceCache.readCache();
+        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceCache.readCache(serviceKey);
         if (cachedServiceMetaInfoList != null) {
             return cachedServiceMetaInfoList;
         }
@@ -128,8 +133,9 @@ public class ZooKeeperRegistry implements Registry {
                     .map(ServiceInstance::getPayload)
                     .collect(Collectors.toList());
 
-            // 写入服务缓存
-            registryServiceCache.writeCache(serviceMetaInfoList);
+            // 写入服务缓存，并监听该服务下节点的变化
+            registryServiceCache.writeCache(serviceKey, serviceMetaInfoList);
+            watch(serviceKey);
             return serviceMetaInfoList;
         } catch (Exception e) {
             throw new RuntimeException("获取服务列表失败", e);
@@ -143,23 +149,42 @@ public class ZooKeeperRegistry implements Registry {
 
     /**
      * 监听（消费端）
+     * 监听服务路径下的所有子节点，新增、更新、删除都只修改对应节点的缓存
      *
-     * @param serviceNodeKey 服务节点 key
+     * @param serviceKey 服务键
      */
     @Override
-    public void watch(String serviceNodeKey) {
-        String watchKey = ZK_ROOT_PATH + "/" + serviceNodeKey;
+    public void watch(String serviceKey) {
+        String watchKey = ZK_ROOT_PATH + "/" + serviceKey;
         boolean newWatch = watchingKeySet.add(watchKey);
         if (newWatch) {
             CuratorCache curatorCache = CuratorCache.build(client, watchKey);
-            curatorCache.start();
             curatorCache.listenable().addListener(
                     CuratorCacheListener
                             .builder()
-                            .forDeletes(childData -> registryServiceCache.clearCache())
-                            .forChanges(((oldNode, node) -> registryServiceCache.clearCache()))
+                            .forCreatesAndChanges((oldNode, node) -> {
+                                // 跳过服务路径本身
+                                if (watchKey.equals(node.getPath())) {
+                                    return;
+                                }
+                                try {
+                                    ServiceMetaInfo serviceMetaInfo = instanceSerializer.deserialize(node.getData()).getPayload();
+                                    registryServiceCache.putNode(serviceKey, serviceMetaInfo);
+                                } catch (Exception e) {
+                                    log.error("解析节点信息失败: {}", node.getPath(), e);
+                                    registryServiceCache.clearCache(serviceKey);
+                                }
+                            })
+                            .forDeletes(childData -> {
+                                if (watchKey.equals(childData.getPath())) {
+                                    return;
+                                }
+                                String serviceNodeKey = childData.getPath().substring(ZK_ROOT_PATH.length() + 1);
+                                registryServiceCache.removeNode(serviceKey, serviceNodeKey);
+                            })
                             .build()
             );
+            curatorCache.start();
         }
     }
 
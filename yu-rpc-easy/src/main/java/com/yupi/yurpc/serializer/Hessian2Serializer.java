@@ -0,0 +1,77 @@
+package com.yupi.yurpc.serializer;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.SerializerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hessian2 序列化器
+ * 所有流共用一个 SerializerFactory（缓存各类的序列化器），Hessian2Output / Hessian2Input 及其内部缓冲区放入有界池中复用；
+ * 每次复用前重置引用表，引用和类定义只在单条消息内共享，消息之间互不影响
+ */
+public class Hessian2Serializer implements Serializer {
+
+    /**
+     * 共享的序列化器工厂
+     */
+    private static final SerializerFactory SERIALIZER_FACTORY = new SerializerFactory();
+
+    /**
+     * 池中最多保留的对象数
+     */
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 4;
+
+    private static final BlockingQueue<Hessian2Output> OUTPUT_POOL = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    private static final BlockingQueue<Hessian2Input> INPUT_POOL = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    @Override
+    public <T> byte[] serialize(T object) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        serialize(object, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
+        return deserialize(new ByteArrayInputStream(bytes), type);
+    }
+
+    @Override
+    public <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        Hessian2Output hessian2Output = OUTPUT_POOL.poll();
+        if (hessian2Output == null) {
+            hessian2Output = new Hessian2Output();
+            hessian2Output.setSerializerFactory(SERIALIZER_FACTORY);
+        }
+        // 出错时直接抛出，对象状态不确定，不放回池中
+        hessian2Output.init(outputStream);
+        hessian2Output.writeObject(object);
+        hessian2Output.flush();
+        hessian2Output.init(null);
+        OUTPUT_POOL.offer(hessian2Output);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> type) throws IOException {
+        Hessian2Input hessian2Input = INPUT_POOL.poll();
+        if (hessian2Input == null) {
+            hessian2Input = new Hessian2Input();
+            hessian2Input.setSerializerFactory(SERIALIZER_FACTORY);
+        }
+        // 出错时直接抛出，对象状态不确定，不放回池中
+        hessian2Input.init(inputStream);
+        T object = (T) hessian2Input.readObject(type);
+        hessian2Input.init(null);
+        INPUT_POOL.offer(hessian2Input);
+        return object;
+    }
+}
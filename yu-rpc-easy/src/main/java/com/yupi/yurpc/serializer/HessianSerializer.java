@@ -6,20 +6,32 @@ import com.caucho.hessian.io.HessianOutput;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class HessianSerializer implements Serializer{
     @Override
     public <T> byte[] serialize(T object) throws IOException {
         ByteArrayOutputStream byteArrayOutputStream=new ByteArrayOutputStream();
-        HessianOutput hessianOutput=new HessianOutput(byteArrayOutputStream);
-        hessianOutput.writeObject(object);
+        serialize(object,byteArrayOutputStream);
         return byteArrayOutputStream.toByteArray();
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
-        ByteArrayInputStream byteArrayInputStream=new ByteArrayInputStream(bytes);
-        HessianInput hessianInput=new HessianInput(byteArrayInputStream);
+        return deserialize(new ByteArrayInputStream(bytes),type);
+    }
+
+    @Override
+    public <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        HessianOutput hessianOutput=new HessianOutput(outputStream);
+        hessianOutput.writeObject(object);
+        hessianOutput.flush();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> type) throws IOException {
+        HessianInput hessianInput=new HessianInput(inputStream);
         return (T) hessianInput.readObject(type);
     }
 }
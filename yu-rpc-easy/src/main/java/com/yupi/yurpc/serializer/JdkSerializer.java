@@ -13,22 +13,29 @@ public class JdkSerializer implements Serializer{
     @Override
     public <T> byte[] serialize(T object) throws IOException {
         ByteArrayOutputStream outputStream=new ByteArrayOutputStream();
-        ObjectOutputStream objectOutputStream=new ObjectOutputStream(outputStream);
-        objectOutputStream.writeObject(object);
-        objectOutputStream.close();
+        serialize(object,outputStream);
         return outputStream.toByteArray();
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+        return deserialize(new ByteArrayInputStream(bytes),type);
+    }
+
+    @Override
+    public <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        ObjectOutputStream objectOutputStream=new ObjectOutputStream(outputStream);
+        objectOutputStream.writeObject(object);
+        objectOutputStream.flush();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> type) throws IOException {
         ObjectInputStream objectInputStream = new ObjectInputStream(inputStream);
         try{
             return (T) objectInputStream.readObject();
         } catch (ClassNotFoundException e) {
             throw new RuntimeException(e);
-        }finally{
-            objectInputStream.close();
         }
     }
 }
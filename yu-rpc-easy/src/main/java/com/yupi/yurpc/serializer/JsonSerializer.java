@@ -1,20 +1,48 @@
 package com.yupi.yurpc.serializer;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Json 序列化器
+ * 请求参数和响应数据在解析时直接按 parameterTypes / dataType（或 genericDataType）反序列化成目标类型，只解析一遍
  *
  * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
  * @learn <a href="https://codefather.cn">编程宝典</a>
  * @from <a href="https://yupi.icu">编程导航知识星球</a>
  */
 public class JsonSerializer implements Serializer {
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    /**
+     * 流式读写时不关闭传入的流（由调用方管理）
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false)
+            // transient 字段（如请求的附加信息）不参与序列化
+            .configure(MapperFeature.PROPAGATE_TRANSIENT_MARKER, true)
+            // 类型字段写在值之前，解析值时类型已知
+            .addMixIn(RpcRequest.class, RpcRequestMixin.class)
+            .addMixIn(RpcResponse.class, RpcResponseMixin.class)
+            .registerModule(new SimpleModule()
+                    .addDeserializer(RpcRequest.class, new RpcRequestDeserializer())
+                    .addDeserializer(RpcResponse.class, new RpcResponseDeserializer()));
 
     @Override
     public <T> byte[] serialize(T obj) throws IOException {
@@ -23,52 +51,178 @@ public class JsonSerializer implements Serializer {
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> classType) throws IOException {
-        T obj = OBJECT_MAPPER.readValue(bytes, classType);
-        if (obj instanceof RpcRequest) {
-            return handleRequest((RpcRequest) obj, classType);
+        return OBJECT_MAPPER.readValue(bytes, classType);
+    }
+
+    @Override
+    public <T> void serialize(T obj, OutputStream outputStream) throws IOException {
+        OBJECT_MAPPER.writeValue(outputStream, obj);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> classType) throws IOException {
+        return OBJECT_MAPPER.readValue(inputStream, classType);
+    }
+
+    @JsonPropertyOrder({"serviceName", "methodName", "serviceVersion", "parameterTypes", "args", "methodId"})
+    private abstract static class RpcRequestMixin {
+    }
+
+    @JsonPropertyOrder({"dataType", "genericDataType", "data", "message", "exception"})
+    private abstract static class RpcResponseMixin {
+    }
+
+    /**
+     * 请求反序列化器：按 parameterTypes 逐个解析 args
+     * 由于 Object 的原始类型会被擦除，默认会被解析为 LinkedHashMap，因此在解析时直接指定目标类型
+     */
+    private static class RpcRequestDeserializer extends StdDeserializer<RpcRequest> {
+
+        RpcRequestDeserializer() {
+            super(RpcRequest.class);
+        }
+
+        @Override
+        public RpcRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            RpcRequest rpcRequest = new RpcRequest();
+            // 其他来源的 JSON 可能把 args 写在 parameterTypes 之前，先缓存起来
+            TokenBuffer pendingArgs = null;
+            for (String name = firstFieldName(p); name != null; name = nextFieldName(p)) {
+                p.nextToken();
+                switch (name) {
+                    case "serviceName":
+                        rpcRequest.setServiceName(p.getValueAsString());
+                        break;
+                    case "methodName":
+                        rpcRequest.setMethodName(p.getValueAsString());
+                        break;
+                    case "serviceVersion":
+                        rpcRequest.setServiceVersion(p.getValueAsString());
+                        break;
+                    case "parameterTypes":
+                        rpcRequest.setParameterTypes(readValue(p, ctxt, ctxt.constructType(Class[].class)));
+                        break;
+                    case "methodId":
+                        rpcRequest.setMethodId(p.getValueAsInt());
+                        break;
+                    case "args":
+                        if (rpcRequest.getParameterTypes() == null) {
+                            pendingArgs = ctxt.bufferAsCopyOfValue(p);
+                        } else {
+                            rpcRequest.setArgs(readArgs(p, ctxt, rpcRequest.getParameterTypes()));
+                        }
+                        break;
+                    default:
+                        p.skipChildren();
+                }
+            }
+            if (pendingArgs != null) {
+                try (JsonParser bufferParser = pendingArgs.asParser(p.getCodec())) {
+                    bufferParser.nextToken();
+                    rpcRequest.setArgs(readArgs(bufferParser, ctxt, rpcRequest.getParameterTypes()));
+                }
+            }
+            return rpcRequest;
         }
-        if (obj instanceof RpcResponse) {
-            return handleResponse((RpcResponse) obj, classType);
+
+        private static Object[] readArgs(JsonParser p, DeserializationContext ctxt, Class<?>[] parameterTypes) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            List<Object> args = new ArrayList<>();
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                int index = args.size();
+                Class<?> type = parameterTypes != null && index < parameterTypes.length ? parameterTypes[index] : Object.class;
+                args.add(readValue(p, ctxt, ctxt.constructType(type)));
+            }
+            return args.toArray();
         }
-        return obj;
     }
 
     /**
-     * 由于 Object 的原始对象会被擦除，导致反序列化时会被作为 LinkedHashMap 无法转换成原始对象，因此这里做了特殊处理
-     *
-     * @param rpcRequest rpc 请求
-     * @param type       类型
-     * @return {@link T}
-     * @throws IOException IO异常
+     * 响应反序列化器：按 genericDataType（带泛型）或 dataType 解析 data
      */
-    private <T> T handleRequest(RpcRequest rpcRequest, Class<T> type) throws IOException {
-        Class<?>[] parameterTypes = rpcRequest.getParameterTypes();
-        Object[] args = rpcRequest.getArgs();
-
-        // 循环处理每个参数的类型
-        for (int i = 0; i < parameterTypes.length; i++) {
-            Class<?> clazz = parameterTypes[i];
-            // 如果类型不同，则重新处理一下类型
-            if (!clazz.isAssignableFrom(args[i].getClass())) {
-                byte[] argBytes = OBJECT_MAPPER.writeValueAsBytes(args[i]);
-                args[i] = OBJECT_MAPPER.readValue(argBytes, clazz);
+    private static class RpcResponseDeserializer extends StdDeserializer<RpcResponse> {
+
+        RpcResponseDeserializer() {
+            super(RpcResponse.class);
+        }
+
+        @Override
+        public RpcResponse deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            RpcResponse rpcResponse = new RpcResponse();
+            TokenBuffer pendingData = null;
+            for (String name = firstFieldName(p); name != null; name = nextFieldName(p)) {
+                p.nextToken();
+                switch (name) {
+                    case "dataType":
+                        rpcResponse.setDataType(readValue(p, ctxt, ctxt.constructType(Class.class)));
+                        break;
+                    case "genericDataType":
+                        rpcResponse.setGenericDataType(p.getValueAsString());
+                        break;
+                    case "data":
+                        if (rpcResponse.getDataType() == null) {
+                            pendingData = ctxt.bufferAsCopyOfValue(p);
+                        } else {
+                            rpcResponse.setData(readValue(p, ctxt, getDataType(ctxt, rpcResponse)));
+                        }
+                        break;
+                    case "message":
+                        rpcResponse.setMessage(p.getValueAsString());
+                        break;
+                    case "exception":
+                        rpcResponse.setException(readValue(p, ctxt, ctxt.constructType(Exception.class)));
+                        break;
+                    default:
+                        p.skipChildren();
+                }
+            }
+            if (pendingData != null) {
+                try (JsonParser bufferParser = pendingData.asParser(p.getCodec())) {
+                    bufferParser.nextToken();
+                    rpcResponse.setData(readValue(bufferParser, ctxt, getDataType(ctxt, rpcResponse)));
+                }
+            }
+            return rpcResponse;
+        }
+
+        private static JavaType getDataType(DeserializationContext ctxt, RpcResponse rpcResponse) {
+            if (rpcResponse.getGenericDataType() != null) {
+                try {
+                    return ctxt.getTypeFactory().constructFromCanonical(rpcResponse.getGenericDataType());
+                } catch (IllegalArgumentException e) {
+                    // 含类型变量等无法解析的泛型，退化为原始类型
+                }
             }
+            Class<?> dataType = rpcResponse.getDataType();
+            return ctxt.constructType(dataType == null || dataType == void.class ? Object.class : dataType);
         }
-        return type.cast(rpcRequest);
     }
 
     /**
-     * 由于 Object 的原始对象会被擦除，导致反序列化时会被作为 LinkedHashMap 无法转换成原始对象，因此这里做了特殊处理
+     * 读取第一个字段名（进入反序列化器时可能停在 START_OBJECT 或第一个字段名上）
+     *
+     * @return 空对象时返回 null
+     */
+    private static String firstFieldName(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.FIELD_NAME ? p.currentName() : nextFieldName(p);
+    }
+
+    /**
+     * 读取下一个字段名
      *
-     * @param rpcResponse rpc 响应
-     * @param type        类型
-     * @return {@link T}
-     * @throws IOException IO异常
+     * @return 对象结束时返回 null
      */
-    private <T> T handleResponse(RpcResponse rpcResponse, Class<T> type) throws IOException {
-        // 处理响应数据
-        byte[] dataBytes = OBJECT_MAPPER.writeValueAsBytes(rpcResponse.getData());
-        rpcResponse.setData(OBJECT_MAPPER.readValue(dataBytes, rpcResponse.getDataType()));
-        return type.cast(rpcResponse);
+    private static String nextFieldName(JsonParser p) throws IOException {
+        JsonToken token = p.nextToken();
+        return token == JsonToken.FIELD_NAME ? p.currentName() : null;
+    }
+
+    private static <T> T readValue(JsonParser p, DeserializationContext ctxt, JavaType type) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return ctxt.readValue(p, type);
     }
 }
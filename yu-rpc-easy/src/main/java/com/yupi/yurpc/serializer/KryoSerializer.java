@@ -1,42 +1,211 @@
 package com.yupi.yurpc.serializer;
 
+import cn.hutool.core.io.resource.ResourceUtil;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Kryo 序列化器
+ * Kryo 线程不安全，使用有界对象池复用 Kryo 实例和 Output / Input 缓冲区（虚拟线程、事件循环线程都适用）
+ * 框架内置类和用户登记的类按固定 id 注册，序列化结果只写 id 不写完整类名；未登记的类仍可动态序列化
+ */
+@Slf4j
 public class KryoSerializer implements Serializer{
+
     /**
-     * kryo线程不安全，使用Threadlocal保证每个线程只有一个kryo
-     * @param object
-     * @return
-     * @param <T>
-     * @throws IOException
+     * 用户类注册文件（每行 id=类名，提供者和消费者需保持一致）
      */
-    private static final ThreadLocal<Kryo> KRYO_THREAD_LOCAL=ThreadLocal.withInitial(()-> {
-        Kryo kryo=new Kryo();
-        //设置动态序列化跟反序列化类，不提前注册所有类（可能有安全问题）
-        kryo.setRegistrationRequired(false);
-        return kryo;
+    private static final String REGISTRATION_PATH = "META-INF/rpc/custom/kryo";
+
+    /**
+     * 用户类可用的最小 id（更小的 id 预留给 Kryo 默认类型和框架内置类）
+     */
+    private static final int MIN_USER_REGISTRATION_ID = 100;
+
+    /**
+     * 框架内置类 => 注册 id
+     */
+    private static final Map<Class<?>, Integer> SYSTEM_REGISTRATIONS = new LinkedHashMap<>();
+
+    static {
+        SYSTEM_REGISTRATIONS.put(RpcRequest.class, 20);
+        SYSTEM_REGISTRATIONS.put(RpcResponse.class, 21);
+        SYSTEM_REGISTRATIONS.put(Class.class, 22);
+        SYSTEM_REGISTRATIONS.put(Class[].class, 23);
+        SYSTEM_REGISTRATIONS.put(Object[].class, 24);
+        SYSTEM_REGISTRATIONS.put(ArrayList.class, 25);
+        SYSTEM_REGISTRATIONS.put(HashMap.class, 26);
+        SYSTEM_REGISTRATIONS.put(LinkedHashMap.class, 27);
     }
-    );
+
+    /**
+     * 用户登记的类：id => 类
+     */
+    private static final Map<Integer, Class<?>> USER_REGISTRATIONS = loadUserRegistrations();
+
+    /**
+     * 池中最多保留的对象数
+     */
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 4;
+
+    /**
+     * Output / Input 初始缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * 超过该大小的缓冲区不放回池中，避免大消息长期占用内存
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private static final Pool<Kryo> KRYO_POOL = new Pool<Kryo>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Kryo create() {
+            return createKryo();
+        }
+    };
+
+    private static final Pool<Output> OUTPUT_POOL = new Pool<Output>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Output create() {
+            return new Output(BUFFER_SIZE, -1);
+        }
+    };
+
+    private static final Pool<Input> INPUT_POOL = new Pool<Input>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Input create() {
+            return new Input(BUFFER_SIZE);
+        }
+    };
+
     @Override
     public <T> byte[] serialize(T object) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream=new ByteArrayOutputStream();
-        Output output=new Output(byteArrayOutputStream);
-        KRYO_THREAD_LOCAL.get().writeObject(output,object);
-        output.close();
-        return byteArrayOutputStream.toByteArray();
+        Kryo kryo = KRYO_POOL.obtain();
+        Output output = OUTPUT_POOL.obtain();
+        try {
+            output.reset();
+            kryo.writeObject(output, object);
+            return output.toBytes();
+        } finally {
+            freeOutput(output);
+            KRYO_POOL.free(kryo);
+        }
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
-        ByteArrayInputStream byteArrayInputStream=new ByteArrayInputStream(bytes);
-        Input input=new Input(byteArrayInputStream);
-        input.close();
-        return KRYO_THREAD_LOCAL.get().readObject(input,type);
+        Kryo kryo = KRYO_POOL.obtain();
+        try {
+            //直接包装字节数组，不需要额外缓冲区
+            return kryo.readObject(new Input(bytes), type);
+        } finally {
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    @Override
+    public <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        Kryo kryo = KRYO_POOL.obtain();
+        Output output = OUTPUT_POOL.obtain();
+        try {
+            output.setOutputStream(outputStream);
+            kryo.writeObject(output, object);
+            output.flush();
+        } finally {
+            output.setOutputStream(null);
+            freeOutput(output);
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> type) throws IOException {
+        Kryo kryo = KRYO_POOL.obtain();
+        Input input = INPUT_POOL.obtain();
+        try {
+            input.setInputStream(inputStream);
+            return kryo.readObject(input, type);
+        } finally {
+            input.setInputStream(null);
+            INPUT_POOL.free(input);
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    private static void freeOutput(Output output) {
+        if (output.getBuffer().length <= MAX_POOLED_BUFFER_SIZE) {
+            OUTPUT_POOL.free(output);
+        }
+    }
+
+    private static Kryo createKryo() {
+        Kryo kryo = new Kryo();
+        //未登记的类仍可动态序列化（写入完整类名），不要求提前注册所有类
+        kryo.setRegistrationRequired(false);
+        SYSTEM_REGISTRATIONS.forEach(kryo::register);
+        USER_REGISTRATIONS.forEach((id, clazz) -> kryo.register(clazz, id));
+        return kryo;
+    }
+
+    /**
+     * 加载用户登记的类
+     *
+     * @return id => 类
+     */
+    private static Map<Integer, Class<?>> loadUserRegistrations() {
+        Map<Integer, Class<?>> registrations = new TreeMap<>();
+        for (URL resource : ResourceUtil.getResources(REGISTRATION_PATH)) {
+            try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = bufferedReader.readLine()) != null) {
+                    String[] strArray = line.trim().split("=");
+                    if (strArray.length < 2) {
+                        continue;
+                    }
+                    int id;
+                    Class<?> clazz;
+                    try {
+                        id = Integer.parseInt(strArray[0].trim());
+                        clazz = Class.forName(strArray[1].trim());
+                    } catch (NumberFormatException | ClassNotFoundException e) {
+                        throw new IllegalArgumentException("Kryo 注册配置非法：" + resource + " => " + line, e);
+                    }
+                    if (id < MIN_USER_REGISTRATION_ID) {
+                        throw new IllegalArgumentException("Kryo 注册 id 必须不小于 " + MIN_USER_REGISTRATION_ID + "：" + line);
+                    }
+                    // 先检查再登记，冲突时保留原有的类并直接失败，不让两端静默错位
+                    Class<?> old = registrations.get(id);
+                    if (old != null && old != clazz) {
+                        throw new IllegalArgumentException("Kryo 注册 id 重复：" + id + " => " + old.getName() + ", " + clazz.getName());
+                    }
+                    registrations.put(id, clazz);
+                }
+            } catch (IOException e) {
+                // 只有读取单个文件失败时跳过该文件，配置错误直接让类初始化失败
+                log.error("Kryo 类注册文件加载失败: {}", resource, e);
+            }
+        }
+        log.info("Kryo 用户类注册：{}", registrations);
+        return Collections.unmodifiableMap(registrations);
     }
 }
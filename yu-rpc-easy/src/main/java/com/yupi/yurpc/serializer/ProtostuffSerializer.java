@@ -0,0 +1,376 @@
+package com.yupi.yurpc.serializer;
+
+import cn.hutool.core.util.ClassUtil;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import io.protostuff.Input;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Output;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Protostuff 序列化器（基于运行时 Schema，按类缓存）
+ * RpcRequest / RpcResponse 使用专用 Schema：参数和返回值按声明类型的 Schema 编码，不写入类名；
+ * 只有声明类型无法确定具体类型（接口、Object、集合等）时才退化为动态编码
+ */
+public class ProtostuffSerializer implements Serializer {
+
+    /**
+     * 池中最多保留的 LinkedBuffer 数量
+     */
+    private static final int BUFFER_POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 4;
+
+    /**
+     * 可复用的 LinkedBuffer
+     */
+    private static final BlockingQueue<LinkedBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(BUFFER_POOL_CAPACITY);
+
+    /**
+     * 类 => 运行时 Schema
+     */
+    private static final Map<Class<?>, Schema<?>> SCHEMA_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 类名 => 类
+     */
+    private static final Map<String, Class<?>> CLASS_CACHE = new ConcurrentHashMap<>();
+
+    private static final Schema<ValueHolder> HOLDER_SCHEMA = RuntimeSchema.getSchema(ValueHolder.class);
+
+    static {
+        SCHEMA_CACHE.put(RpcRequest.class, new RpcRequestSchema());
+        SCHEMA_CACHE.put(RpcResponse.class, new RpcResponseSchema());
+    }
+
+    @Override
+    public <T> byte[] serialize(T object) throws IOException {
+        LinkedBuffer buffer = obtainBuffer();
+        try {
+            return ProtostuffIOUtil.toByteArray(object, getSchema((Class<T>) object.getClass()), buffer);
+        } finally {
+            freeBuffer(buffer);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
+        Schema<T> schema = getSchema(type);
+        T message = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(bytes, message, schema);
+        return message;
+    }
+
+    @Override
+    public <T> void serialize(T object, OutputStream outputStream) throws IOException {
+        LinkedBuffer buffer = obtainBuffer();
+        try {
+            ProtostuffIOUtil.writeTo(outputStream, object, getSchema((Class<T>) object.getClass()), buffer);
+        } finally {
+            freeBuffer(buffer);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream inputStream, Class<T> type) throws IOException {
+        Schema<T> schema = getSchema(type);
+        T message = schema.newMessage();
+        LinkedBuffer buffer = obtainBuffer();
+        try {
+            ProtostuffIOUtil.mergeFrom(inputStream, message, schema, buffer);
+        } finally {
+            freeBuffer(buffer);
+        }
+        return message;
+    }
+
+    private static LinkedBuffer obtainBuffer() {
+        LinkedBuffer buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    }
+
+    private static void freeBuffer(LinkedBuffer buffer) {
+        BUFFER_POOL.offer(buffer.clear());
+    }
+
+    private static <T> Schema<T> getSchema(Class<T> type) {
+        return (Schema<T>) SCHEMA_CACHE.computeIfAbsent(type, RuntimeSchema::getSchema);
+    }
+
+    private static Class<?> loadClass(String className) {
+        return CLASS_CACHE.computeIfAbsent(className, name -> ClassUtil.loadClass(name, false));
+    }
+
+    /**
+     * 声明类型就是值的实际类型，且为普通数据类，可以直接使用该类的 Schema（不需要写入类名）
+     *
+     * @param declaredType 声明类型
+     * @param value        值（非空）
+     * @return
+     */
+    private static boolean isSchemaType(Class<?> declaredType, Object value) {
+        return declaredType != null
+                && value.getClass() == declaredType
+                && !declaredType.isArray()
+                && !declaredType.isEnum()
+                && !Modifier.isAbstract(declaredType.getModifiers())
+                && !declaredType.getName().startsWith("java.");
+    }
+
+    /**
+     * 写入一个值：普通数据类按声明类型编码，其他类型包装后动态编码，null 写入占位
+     */
+    private static void writeValue(Output output, int schemaField, int holderField, int nullField,
+                                   Class<?> declaredType, Object value) throws IOException {
+        if (value == null) {
+            output.writeUInt32(nullField, 0, true);
+        } else if (isSchemaType(declaredType, value)) {
+            output.writeObject(schemaField, value, (Schema<Object>) getSchema(declaredType), true);
+        } else {
+            output.writeObject(holderField, new ValueHolder(value), HOLDER_SCHEMA, true);
+        }
+    }
+
+    private static Object readSchemaValue(Input input, Class<?> declaredType) throws IOException {
+        return input.mergeObject(null, (Schema<Object>) getSchema(declaredType));
+    }
+
+    private static Object readHolderValue(Input input) throws IOException {
+        return input.mergeObject(null, HOLDER_SCHEMA).value;
+    }
+
+    /**
+     * 动态类型值的包装
+     */
+    static class ValueHolder {
+
+        private Object value;
+
+        ValueHolder() {
+        }
+
+        ValueHolder(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 请求 Schema：1 服务名，2 方法名，3 服务版本，4 参数类型名，5/6/7 参数（声明类型编码 / 动态编码 / null），8 方法编号
+     */
+    static class RpcRequestSchema extends AbstractSchema<RpcRequest> {
+
+        RpcRequestSchema() {
+            super(RpcRequest.class);
+        }
+
+        @Override
+        public void mergeFrom(Input input, RpcRequest message) throws IOException {
+            List<Class<?>> parameterTypes = new ArrayList<>();
+            List<Object> args = new ArrayList<>();
+            for (int number = input.readFieldNumber(this); number != 0; number = input.readFieldNumber(this)) {
+                switch (number) {
+                    case 1:
+                        message.setServiceName(input.readString());
+                        break;
+                    case 2:
+                        message.setMethodName(input.readString());
+                        break;
+                    case 3:
+                        message.setServiceVersion(input.readString());
+                        break;
+                    case 4:
+                        parameterTypes.add(loadClass(input.readString()));
+                        break;
+                    case 5:
+                        args.add(readSchemaValue(input, parameterTypes.get(args.size())));
+                        break;
+                    case 6:
+                        args.add(readHolderValue(input));
+                        break;
+                    case 7:
+                        input.readUInt32();
+                        args.add(null);
+                        break;
+                    case 8:
+                        message.setMethodId(input.readInt32());
+                        break;
+                    default:
+                        input.handleUnknownField(number, this);
+                }
+            }
+            message.setParameterTypes(parameterTypes.toArray(new Class[0]));
+            message.setArgs(args.toArray());
+        }
+
+        @Override
+        public void writeTo(Output output, RpcRequest message) throws IOException {
+            if (message.getServiceName() != null) {
+                output.writeString(1, message.getServiceName(), false);
+            }
+            if (message.getMethodName() != null) {
+                output.writeString(2, message.getMethodName(), false);
+            }
+            if (message.getServiceVersion() != null) {
+                output.writeString(3, message.getServiceVersion(), false);
+            }
+            Class<?>[] parameterTypes = message.getParameterTypes();
+            if (parameterTypes != null) {
+                for (Class<?> parameterType : parameterTypes) {
+                    output.writeString(4, parameterType.getName(), true);
+                }
+            }
+            Object[] args = message.getArgs();
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    Class<?> declaredType = parameterTypes != null && i < parameterTypes.length ? parameterTypes[i] : null;
+                    writeValue(output, 5, 6, 7, declaredType, args[i]);
+                }
+            }
+            if (message.getMethodId() != 0) {
+                output.writeInt32(8, message.getMethodId(), false);
+            }
+        }
+    }
+
+    /**
+     * 响应 Schema：1 数据类型名，2/3 数据（声明类型编码 / 动态编码），4 消息，5 异常类名，6 异常信息
+     */
+    static class RpcResponseSchema extends AbstractSchema<RpcResponse> {
+
+        RpcResponseSchema() {
+            super(RpcResponse.class);
+        }
+
+        @Override
+        public void mergeFrom(Input input, RpcResponse message) throws IOException {
+            String exceptionClassName = null;
+            String exceptionMessage = null;
+            for (int number = input.readFieldNumber(this); number != 0; number = input.readFieldNumber(this)) {
+                switch (number) {
+                    case 1:
+                        message.setDataType(loadClass(input.readString()));
+                        break;
+                    case 2:
+                        message.setData(readSchemaValue(input, message.getDataType()));
+                        break;
+                    case 3:
+                        message.setData(readHolderValue(input));
+                        break;
+                    case 4:
+                        message.setMessage(input.readString());
+                        break;
+                    case 5:
+                        exceptionClassName = input.readString();
+                        break;
+                    case 6:
+                        exceptionMessage = input.readString();
+                        break;
+                    default:
+                        input.handleUnknownField(number, this);
+                }
+            }
+            if (exceptionClassName != null) {
+                message.setException(newException(exceptionClassName, exceptionMessage));
+            }
+        }
+
+        @Override
+        public void writeTo(Output output, RpcResponse message) throws IOException {
+            if (message.getDataType() != null) {
+                output.writeString(1, message.getDataType().getName(), false);
+            }
+            if (message.getData() != null) {
+                writeValue(output, 2, 3, 0, message.getDataType(), message.getData());
+            }
+            if (message.getMessage() != null) {
+                output.writeString(4, message.getMessage(), false);
+            }
+            // 异常只传递类名和信息
+            Exception exception = message.getException();
+            if (exception != null) {
+                output.writeString(5, exception.getClass().getName(), false);
+                if (exception.getMessage() != null) {
+                    output.writeString(6, exception.getMessage(), false);
+                }
+            }
+        }
+
+        /**
+         * 按类名还原异常，无法还原时使用 RuntimeException
+         */
+        private static Exception newException(String className, String exceptionMessage) {
+            try {
+                Class<?> exceptionClass = loadClass(className);
+                if (Exception.class.isAssignableFrom(exceptionClass)) {
+                    return (Exception) exceptionClass.getConstructor(String.class).newInstance(exceptionMessage);
+                }
+            } catch (Exception ignored) {
+                // 类不存在或没有 (String) 构造器
+            }
+            return new RuntimeException(className + ": " + exceptionMessage);
+        }
+    }
+
+    /**
+     * 专用 Schema 的公共部分（字段名只用于 JSON 等文本格式，这里不需要）
+     */
+    abstract static class AbstractSchema<T> implements Schema<T> {
+
+        private final Class<T> typeClass;
+
+        AbstractSchema(Class<T> typeClass) {
+            this.typeClass = typeClass;
+        }
+
+        @Override
+        public String getFieldName(int number) {
+            return String.valueOf(number);
+        }
+
+        @Override
+        public int getFieldNumber(String name) {
+            return Integer.parseInt(name);
+        }
+
+        @Override
+        public boolean isInitialized(T message) {
+            return true;
+        }
+
+        @Override
+        public T newMessage() {
+            try {
+                return typeClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public String messageName() {
+            return typeClass.getSimpleName();
+        }
+
+        @Override
+        public String messageFullName() {
+            return typeClass.getName();
+        }
+
+        @Override
+        public Class<? super T> typeClass() {
+            return typeClass;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.yupi.yurpc.server;
+
+import com.yupi.yurpc.model.RpcResponse;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * 异步服务结果工具类
+ */
+public class AsyncResultUtils {
+
+    /**
+     * 用异步服务的结果填充响应
+     *
+     * @param rpcResponse
+     * @param value       结果
+     * @param throwable   异常
+     */
+    public static void fillResponse(RpcResponse rpcResponse, Object value, Throwable throwable) {
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            rpcResponse.setMessage(cause.getMessage());
+            rpcResponse.setException(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            return;
+        }
+        rpcResponse.setData(value);
+        // 方法返回类型是 CompletableFuture，用实际结果的类型
+        rpcResponse.setDataType(value == null ? Object.class : value.getClass());
+        rpcResponse.setMessage("ok");
+    }
+}
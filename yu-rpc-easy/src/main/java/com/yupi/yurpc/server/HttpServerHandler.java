@@ -7,6 +7,9 @@ import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.registry.LocalRegistry;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
+import com.yupi.yurpc.server.executor.ProviderExecutor;
+import com.yupi.yurpc.server.executor.ProviderExecutorFactory;
+import com.yupi.yurpc.server.invoker.MethodInvoker;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
@@ -14,7 +17,8 @@ import io.vertx.core.http.HttpServerResponse;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 
 public class HttpServerHandler implements Handler<HttpServerRequest> {
     
@@ -23,6 +27,7 @@ public class HttpServerHandler implements Handler<HttpServerRequest> {
         //指定序列化器
         RpcConfig rpcConfig = RpcApplication.getRpcConfig();
         final Serializer serializer = SerializerFactory.getInstance(rpcConfig.getSerializer());
+        final ProviderExecutor providerExecutor = ProviderExecutorFactory.getInstance(rpcConfig.getServerConfig().getExecutor());
 
         //记录日志
         System.out.println("Received request: " + request.method() + " " + request.uri());
@@ -46,27 +51,50 @@ public class HttpServerHandler implements Handler<HttpServerRequest> {
                 doResponse(request,rpcResponse,serializer);
                 return ;
             }
+            //业务方法交给执行器，I/O 线程只负责编解码
+            RpcRequest finalRpcRequest=rpcRequest;
             try{
-                //获取要调用的服务实现类，通过反射调用
-                Class<?>implClass= LocalRegistry.get(rpcRequest.getServiceName());
-                Method method=implClass.getMethod(rpcRequest.getMethodName(),rpcRequest.getParameterTypes());
-                Object result=method.invoke(implClass.newInstance(),rpcRequest.getArgs());
-                //封装返回结果
-                rpcResponse.setData(result);
-                rpcResponse.setDataType(method.getReturnType());
-                rpcResponse.setMessage("ok");
-            } catch (Exception e) {
-                e.printStackTrace();
-                rpcResponse.setMessage(e.getMessage());
+                providerExecutor.execute(rpcRequest.getServiceName(),()->doInvoke(request,finalRpcRequest,rpcResponse,serializer));
+            } catch (RejectedExecutionException e) {
+                rpcResponse.setMessage("服务端繁忙，请求被拒绝");
                 rpcResponse.setException(e);
+                doResponse(request,rpcResponse,serializer);
             }
-
-            //响应
-            doResponse(request,rpcResponse,serializer);
         });
 
     }
 
+    /**
+     * 调用服务方法并响应（在业务执行器中执行）
+     */
+    void doInvoke(HttpServerRequest request,RpcRequest rpcRequest,RpcResponse rpcResponse,Serializer serializer){
+        try{
+            //获取注册时预先构建的方法调用器
+            MethodInvoker methodInvoker=LocalRegistry.getMethodInvoker(rpcRequest.getServiceName(),rpcRequest.getMethodName(),rpcRequest.getParameterTypes());
+            Object result=methodInvoker.invoke(rpcRequest.getArgs());
+            //异步服务：结果完成后再响应
+            if(result instanceof CompletionStage){
+                ((CompletionStage<?>) result).whenComplete((value,e)->{
+                    AsyncResultUtils.fillResponse(rpcResponse,value,e);
+                    doResponse(request,rpcResponse,serializer);
+                });
+                return;
+            }
+            //封装返回结果
+            rpcResponse.setData(result);
+            rpcResponse.setDataType(methodInvoker.getReturnType());
+            rpcResponse.setGenericDataType(methodInvoker.getGenericReturnTypeName());
+            rpcResponse.setMessage("ok");
+        } catch (Exception e) {
+            e.printStackTrace();
+            rpcResponse.setMessage(e.getMessage());
+            rpcResponse.setException(e);
+        }
+
+        //响应
+        doResponse(request,rpcResponse,serializer);
+    }
+
     void doResponse(HttpServerRequest request,RpcResponse rpcResponse,Serializer serializer){
         HttpServerResponse httpServerResponse = request.response().putHeader("content-type", "application/json");
         try{
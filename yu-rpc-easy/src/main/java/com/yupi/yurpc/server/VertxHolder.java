@@ -0,0 +1,74 @@
+package com.yupi.yurpc.server;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.config.ServerConfig;
+import com.yupi.yurpc.config.TransportConfig;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.net.TCPSSLOptions;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Vert.x 实例持有者
+ * 整个 JVM 共用一个 Vert.x 运行时（事件循环线程池），双检锁单例模式实现
+ * 线程池大小取自服务端配置，是否使用原生传输取自传输配置
+ */
+@Slf4j
+public class VertxHolder {
+
+    private static volatile Vertx vertx;
+
+    private VertxHolder() {
+    }
+
+    /**
+     * 获取共享的 Vert.x 实例
+     *
+     * @return
+     */
+    public static Vertx getVertx() {
+        if (vertx == null) {
+            synchronized (VertxHolder.class) {
+                if (vertx == null) {
+                    RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+                    vertx = Vertx.vertx(buildVertxOptions(rpcConfig.getServerConfig(), rpcConfig.getTransportConfig()));
+                    if (rpcConfig.getTransportConfig().isNativeTransport() && !vertx.isNativeTransportEnabled()) {
+                        log.warn("原生传输不可用，使用 NIO", vertx.unavailableNativeTransportCause());
+                    }
+                }
+            }
+        }
+        return vertx;
+    }
+
+    /**
+     * 把传输配置应用到服务端或客户端的连接选项
+     *
+     * @param options NetServerOptions 或 NetClientOptions
+     */
+    public static void applyTransportConfig(TCPSSLOptions options) {
+        TransportConfig transportConfig = RpcApplication.getRpcConfig().getTransportConfig();
+        options.setTcpNoDelay(transportConfig.isTcpNoDelay())
+                .setTcpKeepAlive(transportConfig.isTcpKeepAlive())
+                .setReusePort(transportConfig.isReusePort());
+        if (transportConfig.getSendBufferSize() > 0) {
+            options.setSendBufferSize(transportConfig.getSendBufferSize());
+        }
+        if (transportConfig.getReceiveBufferSize() > 0) {
+            options.setReceiveBufferSize(transportConfig.getReceiveBufferSize());
+        }
+    }
+
+    private static VertxOptions buildVertxOptions(ServerConfig serverConfig, TransportConfig transportConfig) {
+        VertxOptions vertxOptions = new VertxOptions()
+                .setPreferNativeTransport(transportConfig.isNativeTransport());
+        if (serverConfig.getEventLoopPoolSize() > 0) {
+            vertxOptions.setEventLoopPoolSize(serverConfig.getEventLoopPoolSize());
+        }
+        if (serverConfig.getWorkerPoolSize() > 0) {
+            vertxOptions.setWorkerPoolSize(serverConfig.getWorkerPoolSize());
+        }
+        return vertxOptions;
+    }
+}
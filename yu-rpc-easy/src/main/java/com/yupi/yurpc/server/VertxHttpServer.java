@@ -5,8 +5,8 @@ import io.vertx.core.Vertx;
 public class VertxHttpServer implements HttpServer{
     @Override
     public void doStart(int port) {
-        //创建Vertx示例
-        Vertx vertx = Vertx.vertx();
+        //获取共享的 Vertx 实例
+        Vertx vertx = VertxHolder.getVertx();
         //创建http服务器
         io.vertx.core.http.HttpServer server=vertx.createHttpServer();
 
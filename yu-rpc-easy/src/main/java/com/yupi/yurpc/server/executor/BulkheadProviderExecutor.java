@@ -0,0 +1,28 @@
+package com.yupi.yurpc.server.executor;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ServerConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 每个服务独立线程池（舱壁隔离），一个服务变慢不影响其他服务
+ */
+public class BulkheadProviderExecutor implements ProviderExecutor {
+
+    /**
+     * 服务名称 => 线程池
+     */
+    private final Map<String, ExecutorService> executorServiceMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void execute(String serviceName, Runnable task) {
+        executorServiceMap.computeIfAbsent(serviceName, key -> {
+            ServerConfig serverConfig = RpcApplication.getRpcConfig().getServerConfig();
+            String simpleName = key.substring(key.lastIndexOf('.') + 1);
+            return FixedProviderExecutor.createThreadPool("rpc-provider-" + simpleName + "-", serverConfig);
+        }).execute(task);
+    }
+}
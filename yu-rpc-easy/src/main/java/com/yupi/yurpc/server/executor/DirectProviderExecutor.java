@@ -0,0 +1,12 @@
+package com.yupi.yurpc.server.executor;
+
+/**
+ * 直接在 I/O 线程执行，仅适用于不会阻塞的轻量服务
+ */
+public class DirectProviderExecutor implements ProviderExecutor {
+
+    @Override
+    public void execute(String serviceName, Runnable task) {
+        task.run();
+    }
+}
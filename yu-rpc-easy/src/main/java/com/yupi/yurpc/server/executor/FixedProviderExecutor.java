@@ -0,0 +1,53 @@
+package com.yupi.yurpc.server.executor;
+
+import cn.hutool.core.thread.ThreadUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ServerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.*;
+
+/**
+ * 共享的固定大小线程池
+ */
+@Slf4j
+public class FixedProviderExecutor implements ProviderExecutor {
+
+    private final ExecutorService executorService =
+            createThreadPool("rpc-provider-", RpcApplication.getRpcConfig().getServerConfig());
+
+    @Override
+    public void execute(String serviceName, Runnable task) {
+        executorService.execute(task);
+    }
+
+    /**
+     * 按配置创建有界线程池
+     *
+     * @param namePrefix   线程名前缀
+     * @param serverConfig
+     * @return
+     */
+    static ThreadPoolExecutor createThreadPool(String namePrefix, ServerConfig serverConfig) {
+        int workerThreads = serverConfig.getWorkerThreads();
+        int queueCapacity = serverConfig.getQueueCapacity();
+        BlockingQueue<Runnable> workQueue = queueCapacity > 0
+                ? new LinkedBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        return new ThreadPoolExecutor(workerThreads, workerThreads,
+                60L, TimeUnit.SECONDS,
+                workQueue,
+                ThreadUtil.newNamedThreadFactory(namePrefix, false),
+                getRejectedExecutionHandler(serverConfig.getRejectPolicy()));
+    }
+
+    private static RejectedExecutionHandler getRejectedExecutionHandler(String rejectPolicy) {
+        if (RejectPolicyKeys.CALLER_RUNS.equals(rejectPolicy)) {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+        if (!RejectPolicyKeys.ABORT.equals(rejectPolicy)) {
+            log.warn("未知的拒绝策略 {}，使用 {}", rejectPolicy, RejectPolicyKeys.ABORT);
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
+}
@@ -0,0 +1,23 @@
+package com.yupi.yurpc.server.executor;
+
+import com.yupi.yurpc.spi.SpiLoader;
+
+/**
+ * 服务提供者业务执行器工厂（工厂模式，用于获取执行器对象）
+ */
+public class ProviderExecutorFactory {
+
+    static {
+        SpiLoader.load(ProviderExecutor.class);
+    }
+
+    /**
+     * 获取实例
+     *
+     * @param key
+     * @return
+     */
+    public static ProviderExecutor getInstance(String key) {
+        return SpiLoader.getInstance(ProviderExecutor.class, key);
+    }
+}
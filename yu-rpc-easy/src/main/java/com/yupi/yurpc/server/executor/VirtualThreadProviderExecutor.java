@@ -0,0 +1,85 @@
+package com.yupi.yurpc.server.executor;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ServerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 虚拟线程执行器（JDK 21+）
+ * 每个请求一个虚拟线程，用信号量限制最大并发请求数；低版本 JDK 退化为固定线程池
+ */
+@Slf4j
+public class VirtualThreadProviderExecutor implements ProviderExecutor {
+
+    private final ExecutorService executorService;
+
+    /**
+     * 并发许可，为 null 表示不限制或退化为固定线程池（由线程池自身限流）
+     */
+    private final Semaphore permits;
+
+    private final boolean callerRuns;
+
+    public VirtualThreadProviderExecutor() {
+        this(RpcApplication.getRpcConfig().getServerConfig());
+    }
+
+    VirtualThreadProviderExecutor(ServerConfig serverConfig) {
+        ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+        if (virtualThreadExecutor == null) {
+            log.warn("当前 JDK 不支持虚拟线程，使用固定线程池");
+            this.executorService = FixedProviderExecutor.createThreadPool("rpc-provider-", serverConfig);
+            this.permits = null;
+        } else {
+            this.executorService = virtualThreadExecutor;
+            int maxConcurrency = serverConfig.getMaxConcurrency();
+            this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        }
+        this.callerRuns = RejectPolicyKeys.CALLER_RUNS.equals(serverConfig.getRejectPolicy());
+    }
+
+    @Override
+    public void execute(String serviceName, Runnable task) {
+        if (permits == null) {
+            executorService.execute(task);
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            if (callerRuns) {
+                task.run();
+                return;
+            }
+            throw new RejectedExecutionException("并发请求数已达上限");
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 编译目标为 JDK 17，通过反射创建虚拟线程执行器
+     *
+     * @return 不支持时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
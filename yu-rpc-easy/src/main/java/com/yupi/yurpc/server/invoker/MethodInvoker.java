@@ -0,0 +1,98 @@
+package com.yupi.yurpc.server.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/**
+ * 服务方法调用器
+ * 注册时把方法解析为绑定了服务实例的 MethodHandle，调用时不再查找方法、创建实例
+ */
+public class MethodInvoker {
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private final Method method;
+
+    /**
+     * 参数类型（Method.getParameterTypes 每次都会复制数组，这里缓存一份）
+     */
+    private final Class<?>[] parameterTypes;
+
+    /**
+     * 类型为 (Object[])Object 的方法句柄
+     */
+    private final MethodHandle methodHandle;
+
+    MethodInvoker(Object serviceInstance, Method method) {
+        this.method = method;
+        this.parameterTypes = method.getParameterTypes();
+        this.methodHandle = unreflect(method)
+                .bindTo(serviceInstance)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    /**
+     * 调用服务方法
+     *
+     * @param args 参数
+     * @return 返回值（void 方法返回 null）
+     * @throws Exception 服务方法抛出的异常（不再包装为 InvocationTargetException）
+     */
+    public Object invoke(Object[] args) throws Exception {
+        try {
+            return methodHandle.invokeExact(args == null ? EMPTY_ARGS : args);
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * 参数类型是否匹配
+     *
+     * @param types
+     * @return
+     */
+    boolean matches(Class<?>[] types) {
+        return Arrays.equals(parameterTypes, types);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Class<?> getReturnType() {
+        return method.getReturnType();
+    }
+
+    /**
+     * 带泛型参数的完整返回类型名
+     *
+     * @return 返回类型不带泛型时为 null
+     */
+    public String getGenericReturnTypeName() {
+        Type genericReturnType = method.getGenericReturnType();
+        return genericReturnType instanceof ParameterizedType ? genericReturnType.getTypeName() : null;
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            // 非 public 的实现类，打开访问权限后再解析
+            try {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException | RuntimeException ex) {
+                throw new RuntimeException("无法访问服务方法: " + method, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.yupi.yurpc.server.invoker;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * 服务调用器
+ * 持有唯一的服务实例，以及按方法名、参数类型索引的方法调用器
+ */
+public class ServiceInvoker {
+
+    private static final Class<?>[] EMPTY_PARAMETER_TYPES = new Class<?>[0];
+
+    private final Class<?> serviceClass;
+
+    private final Object serviceInstance;
+
+    /**
+     * 方法名 => 同名方法（重载）的调用器
+     */
+    private final Map<String, MethodInvoker[]> methodInvokerMap;
+
+    public ServiceInvoker(Class<?> serviceClass, Object serviceInstance) {
+        this.serviceClass = serviceClass;
+        this.serviceInstance = serviceInstance;
+        Map<String, List<MethodInvoker>> grouped = new HashMap<>();
+        for (Method method : serviceClass.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            grouped.computeIfAbsent(method.getName(), key -> new ArrayList<>())
+                    .add(new MethodInvoker(serviceInstance, method));
+        }
+        Map<String, MethodInvoker[]> methodInvokerMap = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((name, invokers) -> methodInvokerMap.put(name, invokers.toArray(new MethodInvoker[0])));
+        this.methodInvokerMap = methodInvokerMap;
+    }
+
+    /**
+     * 获取方法调用器
+     *
+     * @param methodName
+     * @param parameterTypes
+     * @return 不存在时返回 null
+     */
+    public MethodInvoker getMethodInvoker(String methodName, Class<?>[] parameterTypes) {
+        MethodInvoker[] methodInvokers = methodInvokerMap.get(methodName);
+        if (methodInvokers == null) {
+            return null;
+        }
+        Class<?>[] types = parameterTypes == null ? EMPTY_PARAMETER_TYPES : parameterTypes;
+        for (MethodInvoker methodInvoker : methodInvokers) {
+            if (methodInvoker.matches(types)) {
+                return methodInvoker;
+            }
+        }
+        return null;
+    }
+
+    public Class<?> getServiceClass() {
+        return serviceClass;
+    }
+
+    public Object getServiceInstance() {
+        return serviceInstance;
+    }
+}
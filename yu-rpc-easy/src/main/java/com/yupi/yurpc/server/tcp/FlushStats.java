@@ -0,0 +1,52 @@
+package com.yupi.yurpc.server.tcp;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 写出合并统计
+ * 累计写出的帧数和 flush（系统调用）次数，两者之比即平均每次 flush 合并的帧数
+ */
+public class FlushStats {
+
+    private final LongAdder frames = new LongAdder();
+
+    private final LongAdder flushes = new LongAdder();
+
+    /**
+     * 记录一次 flush
+     *
+     * @param frameCount 本次写出的帧数
+     */
+    void record(int frameCount) {
+        frames.add(frameCount);
+        flushes.increment();
+    }
+
+    /**
+     * 累计写出的帧数
+     *
+     * @return
+     */
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    /**
+     * 累计 flush 次数
+     *
+     * @return
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * 平均每次 flush 写出的帧数
+     *
+     * @return 还没有 flush 时为 0
+     */
+    public double getFramesPerFlush() {
+        long flushCount = flushes.sum();
+        return flushCount == 0 ? 0 : (double) frames.sum() / flushCount;
+    }
+}
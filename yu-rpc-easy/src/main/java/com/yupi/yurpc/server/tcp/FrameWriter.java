@@ -0,0 +1,175 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.RpcApplication;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.impl.NetSocketInternal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 合并写出的帧写入器（每条连接一个）
+ * 任意线程写入的帧先进入队列，由连接的事件循环线程在同一轮任务中依次写入通道、最后只 flush 一次，
+ * 同一轮中写出的多个帧由 Netty 合并为一次（聚集）写系统调用；帧按进入队列的顺序写出
+ * 等待写出的字节数（队列中 + 通道写缓冲区中）超过上限时新帧直接失败，避免对端读取过慢时缓冲区无限堆积
+ * 需要使用 Vert.x 内部接口 NetSocketInternal 取得通道上下文：公开的 NetSocket.write 不在读事件中时每次写都会 flush，
+ * 无法控制 flush 时机，且不能直接写出池化的 ByteBuf
+ */
+@Slf4j
+class FrameWriter {
+
+    private final ChannelHandlerContext ctx;
+
+    private final FlushStats flushStats;
+
+    /**
+     * 等待写出的最大字节数
+     */
+    private final long maxPendingBytes;
+
+    /**
+     * 队列中等待写出的字节数
+     */
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    /**
+     * 等待写出的帧
+     */
+    private final Queue<Frame> frames = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 是否已提交 flush 任务
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    FrameWriter(NetSocket socket, FlushStats flushStats) {
+        this(((NetSocketInternal) socket).channelHandlerContext(), flushStats,
+                RpcApplication.getRpcConfig().getTransportConfig().getMaxPendingWriteBytes());
+    }
+
+    FrameWriter(ChannelHandlerContext ctx, FlushStats flushStats, long maxPendingBytes) {
+        this.ctx = ctx;
+        this.flushStats = flushStats;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * 写出一帧，写完由 Netty 释放缓冲区
+     *
+     * @param frame
+     * @return 帧是否进入写队列
+     */
+    boolean write(ByteBuf frame) {
+        return write(frame, null);
+    }
+
+    /**
+     * 写出一帧，写完由 Netty 释放缓冲区
+     *
+     * @param frame
+     * @param failureHandler 写出失败时回调，可以为 null
+     * @return 帧是否进入写队列，被拒绝时返回 false（此时 failureHandler 已同步回调）
+     */
+    boolean write(ByteBuf frame, Consumer<Throwable> failureHandler) {
+        int frameLength = frame.readableBytes();
+        long pendingBytes = queuedBytes.get() + getChannelPendingBytes();
+        if (pendingBytes + frameLength > maxPendingBytes) {
+            frame.release();
+            IOException e = new IOException("连接写缓冲区已满（对端读取过慢），等待写出 " + pendingBytes + " 字节");
+            if (failureHandler != null) {
+                failureHandler.accept(e);
+            } else {
+                log.warn("丢弃待写出的帧: {}", ctx.channel().remoteAddress(), e);
+            }
+            return false;
+        }
+        queuedBytes.addAndGet(frameLength);
+        frames.offer(new Frame(frame, frameLength, failureHandler));
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return true;
+        }
+        try {
+            ctx.executor().execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // 事件循环已关闭，丢弃所有等待的帧
+            flushScheduled.set(false);
+            Frame pending;
+            while ((pending = frames.poll()) != null) {
+                queuedBytes.addAndGet(-pending.frameLength);
+                pending.frame.release();
+                if (pending.failureHandler != null) {
+                    pending.failureHandler.accept(e);
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 写出队列中所有帧并 flush 一次（在事件循环线程中执行）
+     */
+    private void flush() {
+        // 先清除标记再取帧，取帧期间新写入的帧会提交新的 flush 任务，不会遗漏
+        flushScheduled.set(false);
+        int frameCount = 0;
+        Frame pending;
+        while ((pending = frames.poll()) != null) {
+            queuedBytes.addAndGet(-pending.frameLength);
+            ctx.write(pending.frame, newPromise(pending.failureHandler));
+            frameCount++;
+        }
+        if (frameCount > 0) {
+            ctx.flush();
+            flushStats.record(frameCount);
+        }
+    }
+
+    /**
+     * 已写入通道但还未发送的字节数
+     *
+     * @return
+     */
+    private long getChannelPendingBytes() {
+        ChannelOutboundBuffer outboundBuffer = ctx.channel().unsafe().outboundBuffer();
+        return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+    }
+
+    private ChannelPromise newPromise(Consumer<Throwable> failureHandler) {
+        if (failureHandler == null) {
+            return ctx.voidPromise();
+        }
+        ChannelPromise promise = ctx.newPromise();
+        promise.addListener(future -> {
+            if (!future.isSuccess()) {
+                failureHandler.accept(future.cause());
+            }
+        });
+        return promise;
+    }
+
+    private static class Frame {
+
+        private final ByteBuf frame;
+
+        private final int frameLength;
+
+        private final Consumer<Throwable> failureHandler;
+
+        Frame(ByteBuf frame, int frameLength, Consumer<Throwable> failureHandler) {
+            this.frame = frame;
+            this.frameLength = frameLength;
+            this.failureHandler = failureHandler;
+        }
+    }
+}
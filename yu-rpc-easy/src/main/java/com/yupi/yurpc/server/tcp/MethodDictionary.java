@@ -0,0 +1,197 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.server.invoker.MethodInvoker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接级方法字典
+ * 同一连接上第一次调用某个方法时发送完整请求，并附带客户端分配的方法编号，服务端记下编号与方法的对应关系；
+ * 之后的请求只携带方法编号和参数，不再传输服务名、方法名、版本和参数类型
+ * TCP 连接内消息按序到达，服务端在 I/O 线程中按序处理定义，因此编号总是先定义后使用
+ * 客户端只在握手协商到 v2 协议后使用（v2 服务端都支持方法字典），v1 对端始终收到完整请求
+ * 代价：精简请求不带参数类型，Protostuff 无法按声明类型编码参数，非基本类型的参数会退化为带类名的动态编码；
+ * 参数以自定义对象为主且请求很小时，精简带来的收益可能被抵消，可通过 ClientConfig.methodDictionary 关闭
+ */
+class MethodDictionary {
+
+    /**
+     * 客户端：方法签名 => 编号
+     */
+    private final Map<MethodKey, Entry> clientEntries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger idGenerator = new AtomicInteger();
+
+    /**
+     * 服务端：编号 => 方法（只在连接所属的事件循环线程中访问）
+     */
+    private final Map<Integer, Entry> serverEntries = new HashMap<>();
+
+    /**
+     * 客户端：生成实际发送的请求（不修改原请求，原请求可能被重试到其他连接）
+     *
+     * @param rpcRequest
+     * @return 编号已定义时返回只含编号和参数的请求，否则返回带编号的完整请求
+     */
+    RpcRequest compact(RpcRequest rpcRequest) {
+        Entry entry = clientEntries.computeIfAbsent(new MethodKey(rpcRequest), key -> new Entry(idGenerator.incrementAndGet(), rpcRequest));
+        RpcRequest request = new RpcRequest();
+        request.setMethodId(entry.id);
+        request.setArgs(rpcRequest.getArgs());
+        if (entry.defined) {
+            request.setServiceName(null);
+            request.setServiceVersion(null);
+            return request;
+        }
+        request.setServiceName(rpcRequest.getServiceName());
+        request.setMethodName(rpcRequest.getMethodName());
+        request.setServiceVersion(rpcRequest.getServiceVersion());
+        request.setParameterTypes(rpcRequest.getParameterTypes());
+        return request;
+    }
+
+    /**
+     * 客户端：定义请求已写出（进入连接的写队列），之后的请求可以只发送编号
+     *
+     * @param rpcRequest 实际发送的请求
+     */
+    void markDefined(RpcRequest rpcRequest) {
+        if (rpcRequest.getServiceName() == null) {
+            return;
+        }
+        Entry entry = clientEntries.get(new MethodKey(rpcRequest));
+        if (entry != null && entry.id == rpcRequest.getMethodId()) {
+            entry.defined = true;
+        }
+    }
+
+    /**
+     * 客户端：定义请求写出失败，之后的请求重新发送完整的方法信息
+     *
+     * @param rpcRequest 实际发送的请求
+     */
+    void markUndefined(RpcRequest rpcRequest) {
+        if (rpcRequest.getServiceName() == null) {
+            return;
+        }
+        Entry entry = clientEntries.get(new MethodKey(rpcRequest));
+        if (entry != null && entry.id == rpcRequest.getMethodId()) {
+            entry.defined = false;
+        }
+    }
+
+    /**
+     * 服务端：登记编号定义，或按编号还原请求的方法信息
+     *
+     * @param rpcRequest
+     * @return 编号对应的方法调用器，未使用编号或方法不存在时为 null（由调用方按方法信息查找并报错）
+     */
+    MethodInvoker resolve(RpcRequest rpcRequest) {
+        int methodId = rpcRequest.getMethodId();
+        if (methodId == 0) {
+            return null;
+        }
+        if (rpcRequest.getServiceName() != null) {
+            Entry entry = new Entry(methodId, rpcRequest);
+            try {
+                entry.methodInvoker = LocalRegistry.getMethodInvoker(entry.serviceName, entry.methodName, entry.parameterTypes);
+            } catch (RuntimeException e) {
+                // 服务或方法不存在，调用时再报错
+            }
+            serverEntries.put(methodId, entry);
+            return entry.methodInvoker;
+        }
+        Entry entry = serverEntries.get(methodId);
+        if (entry == null) {
+            throw new RuntimeException("方法编号未定义: " + methodId);
+        }
+        rpcRequest.setServiceName(entry.serviceName);
+        rpcRequest.setMethodName(entry.methodName);
+        rpcRequest.setServiceVersion(entry.serviceVersion);
+        rpcRequest.setParameterTypes(entry.parameterTypes);
+        return entry.methodInvoker;
+    }
+
+    private static class Entry {
+
+        private final int id;
+
+        private final String serviceName;
+
+        private final String methodName;
+
+        private final String serviceVersion;
+
+        private final Class<?>[] parameterTypes;
+
+        /**
+         * 客户端：定义请求是否已写出
+         */
+        private volatile boolean defined;
+
+        /**
+         * 服务端：方法调用器
+         */
+        private MethodInvoker methodInvoker;
+
+        Entry(int id, RpcRequest rpcRequest) {
+            this.id = id;
+            this.serviceName = rpcRequest.getServiceName();
+            this.methodName = rpcRequest.getMethodName();
+            this.serviceVersion = rpcRequest.getServiceVersion();
+            this.parameterTypes = rpcRequest.getParameterTypes();
+        }
+    }
+
+    /**
+     * 方法签名
+     */
+    private static class MethodKey {
+
+        private final String serviceName;
+
+        private final String methodName;
+
+        private final String serviceVersion;
+
+        private final Class<?>[] parameterTypes;
+
+        private final int hash;
+
+        MethodKey(RpcRequest rpcRequest) {
+            this.serviceName = rpcRequest.getServiceName();
+            this.methodName = rpcRequest.getMethodName();
+            this.serviceVersion = rpcRequest.getServiceVersion();
+            this.parameterTypes = rpcRequest.getParameterTypes();
+            this.hash = Objects.hash(serviceName, methodName, serviceVersion) * 31 + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey) o;
+            return hash == other.hash
+                    && Objects.equals(serviceName, other.serviceName)
+                    && Objects.equals(methodName, other.methodName)
+                    && Objects.equals(serviceVersion, other.serviceVersion)
+                    && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcResponse;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 等待响应的请求表
+ * 同一连接上并发发出的请求按 requestId 与响应匹配
+ * 超时由时间轮触发：登记和取消都是 O(1)，精度为一个刻度，不需要周期性扫描所有在途请求
+ */
+public class PendingCallTable {
+
+    /**
+     * 所有连接共用的超时时间轮（10 毫秒一个刻度）
+     */
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-timeout", true), 10, TimeUnit.MILLISECONDS, 512);
+
+    /**
+     * requestId => 等待中的请求
+     */
+    private final Map<Long, PendingCall> pendingCallMap = new ConcurrentHashMap<>();
+
+    /**
+     * 请求超时回调（用于统计）
+     */
+    private final Runnable timeoutListener;
+
+    public PendingCallTable() {
+        this(() -> {
+        });
+    }
+
+    public PendingCallTable(Runnable timeoutListener) {
+        this.timeoutListener = timeoutListener;
+    }
+
+    /**
+     * 登记请求
+     *
+     * @param requestId
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 响应 future
+     */
+    public CompletableFuture<RpcResponse> register(long requestId, long timeoutMillis) {
+        PendingCall pendingCall = new PendingCall();
+        pendingCallMap.put(requestId, pendingCall);
+        pendingCall.timeout = TIMEOUT_TIMER.newTimeout(timeout -> expire(requestId, pendingCall),
+                Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+        return pendingCall.future;
+    }
+
+    /**
+     * 请求超时（时间轮线程中执行）
+     *
+     * @param requestId
+     * @param pendingCall
+     */
+    private void expire(long requestId, PendingCall pendingCall) {
+        if (!pendingCallMap.remove(requestId, pendingCall)) {
+            return;
+        }
+        // 先计数再通知调用方，调用方看到超时时统计已经更新
+        timeoutListener.run();
+        pendingCall.future.completeExceptionally(new TimeoutException("请求超时，requestId = " + requestId));
+    }
+
+    /**
+     * 完成请求
+     *
+     * @param requestId
+     * @param rpcResponse
+     * @return 是否找到对应请求
+     */
+    public boolean complete(long requestId, RpcResponse rpcResponse) {
+        PendingCall pendingCall = pendingCallMap.remove(requestId);
+        if (pendingCall == null) {
+            return false;
+        }
+        pendingCall.cancelTimeout();
+        pendingCall.future.complete(rpcResponse);
+        return true;
+    }
+
+    /**
+     * 请求失败
+     *
+     * @param requestId
+     * @param cause
+     * @return 是否找到对应请求
+     */
+    public boolean fail(long requestId, Throwable cause) {
+        PendingCall pendingCall = pendingCallMap.remove(requestId);
+        if (pendingCall == null) {
+            return false;
+        }
+        pendingCall.cancelTimeout();
+        pendingCall.future.completeExceptionally(cause);
+        return true;
+    }
+
+    /**
+     * 全部失败（连接断开时调用）
+     *
+     * @param cause
+     */
+    public void failAll(Throwable cause) {
+        Iterator<PendingCall> iterator = pendingCallMap.values().iterator();
+        while (iterator.hasNext()) {
+            PendingCall pendingCall = iterator.next();
+            iterator.remove();
+            pendingCall.cancelTimeout();
+            pendingCall.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 等待中的请求数
+     *
+     * @return
+     */
+    public int size() {
+        return pendingCallMap.size();
+    }
+
+    private static class PendingCall {
+
+        private final CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+
+        /**
+         * 时间轮中的超时任务
+         */
+        private volatile Timeout timeout;
+
+        private void cancelTimeout() {
+            Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -1,52 +1,122 @@
 package com.yupi.yurpc.server.tcp;
 
+import com.yupi.yurpc.RpcApplication;
 import com.yupi.yurpc.protocol.ProtocolConstant;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.parsetools.RecordParser;
 
+/**
+ * TCP 帧拆分器，解决半包和粘包问题
+ * 完整落在一次读取中的帧直接以切片交出（不复制）；跨越多次读取的帧只把已到达的部分复制一次进暂存区
+ * 帧长度超过上限或为负数时抛出异常，之后的数据全部丢弃，调用方应关闭连接
+ */
 public class TcpBufferHandlerWrapper implements Handler<Buffer> {
-    
-    private final RecordParser recordParser;
-    
-    public TcpBufferHandlerWrapper(Handler <Buffer> bufferHandler) {
-        recordParser=initRecordParser(bufferHandler);
+
+    /**
+     * 消息体长度在消息头中的偏移量
+     */
+    private static final int BODY_LENGTH_OFFSET = 13;
+
+    private final Handler<Buffer> bufferHandler;
+
+    /**
+     * 单帧最大长度
+     */
+    private final int maxFrameLength;
+
+    /**
+     * 未接收完整的帧（没有时为 null）
+     */
+    private Buffer pendingBuffer;
+
+    /**
+     * 是否已收到非法帧（流已无法继续拆分）
+     */
+    private boolean broken;
+
+    public TcpBufferHandlerWrapper(Handler<Buffer> bufferHandler) {
+        this(bufferHandler, RpcApplication.getRpcConfig().getMaxFrameLength());
+    }
+
+    public TcpBufferHandlerWrapper(Handler<Buffer> bufferHandler, int maxFrameLength) {
+        this.bufferHandler = bufferHandler;
+        this.maxFrameLength = maxFrameLength;
     }
-    
+
     @Override
     public void handle(Buffer buffer) {
-        recordParser.handle(buffer);
+        if (broken) {
+            return;
+        }
+        int offset = 0;
+        int length = buffer.length();
+        //先补齐上次未接收完整的帧
+        if (pendingBuffer != null) {
+            offset = fillPendingBuffer(buffer);
+            if (pendingBuffer.length() < getFrameLength(pendingBuffer, 0)) {
+                return;
+            }
+            Buffer frame = pendingBuffer;
+            pendingBuffer = null;
+            bufferHandler.handle(frame);
+        }
+        //完整的帧直接切片交出
+        while (length - offset >= ProtocolConstant.MESSAGE_HEADER_LENGTH) {
+            int frameLength = getFrameLength(buffer, offset);
+            if (length - offset < frameLength) {
+                break;
+            }
+            bufferHandler.handle(buffer.slice(offset, offset + frameLength));
+            offset += frameLength;
+        }
+        //剩余的半帧复制到暂存区，等待后续数据
+        if (offset < length) {
+            int expectLength = length - offset >= ProtocolConstant.MESSAGE_HEADER_LENGTH
+                    ? getFrameLength(buffer, offset) : ProtocolConstant.MESSAGE_HEADER_LENGTH;
+            pendingBuffer = Buffer.buffer(expectLength);
+            pendingBuffer.appendBuffer(buffer, offset, length - offset);
+        }
     }
-    
-    private RecordParser initRecordParser(Handler <Buffer> bufferHandler) {
-       //构造 parser
-        RecordParser parser=RecordParser.newFixed(ProtocolConstant.MESSAGE_HEADER_LENGTH);
-        
-        parser.setOutput(new Handler<Buffer>() {
-            int size=-1;
-            Buffer resultBuffer=Buffer.buffer();
-            @Override
-            public void handle(Buffer buffer) {
-                if(-1==size){
-                    //读取消息体长度（从偏移量13开始的4个字节）
-                    size=buffer.getInt(13);
-                    parser.fixedSizeMode(size);
-                    //写入头信息到结果
-                    resultBuffer.appendBuffer(buffer);
-                }else{
-                    //写入体信息到结果
-                    resultBuffer.appendBuffer(buffer);
-                    
-                    //调用传入的 bufferHandler 处理完整消息
-                    bufferHandler.handle(resultBuffer);
-                    
-                    //重置状态
-                    parser.fixedSizeMode(ProtocolConstant.MESSAGE_HEADER_LENGTH);
-                    size=-1;
-                    resultBuffer=Buffer.buffer();
-                }
+
+    /**
+     * 从本次数据中只取补齐暂存帧所需的字节
+     *
+     * @param buffer 本次读取的数据
+     * @return 本次数据已消费的长度
+     */
+    private int fillPendingBuffer(Buffer buffer) {
+        int offset = 0;
+        //先补齐消息头，才能知道帧长度
+        if (pendingBuffer.length() < ProtocolConstant.MESSAGE_HEADER_LENGTH) {
+            offset = Math.min(ProtocolConstant.MESSAGE_HEADER_LENGTH - pendingBuffer.length(), buffer.length());
+            pendingBuffer.appendBuffer(buffer, 0, offset);
+            if (pendingBuffer.length() < ProtocolConstant.MESSAGE_HEADER_LENGTH) {
+                return offset;
             }
-        });
-        return parser;
+        }
+        int need = Math.min(getFrameLength(pendingBuffer, 0) - pendingBuffer.length(), buffer.length() - offset);
+        pendingBuffer.appendBuffer(buffer, offset, need);
+        return offset + need;
+    }
+
+    /**
+     * 读取帧总长度（消息头 + 消息体），消息头不完整时返回消息头长度
+     *
+     * @param buffer
+     * @param offset 帧起始位置
+     * @return
+     */
+    private int getFrameLength(Buffer buffer, int offset) {
+        if (buffer.length() - offset < ProtocolConstant.MESSAGE_HEADER_LENGTH) {
+            return ProtocolConstant.MESSAGE_HEADER_LENGTH;
+        }
+        int bodyLength = buffer.getInt(offset + BODY_LENGTH_OFFSET);
+        // 按 long 计算，避免加上消息头长度后溢出
+        if (bodyLength < 0 || (long) ProtocolConstant.MESSAGE_HEADER_LENGTH + bodyLength > maxFrameLength) {
+            broken = true;
+            pendingBuffer = null;
+            throw new IllegalStateException("消息体长度非法: " + bodyLength + "，单帧最大长度: " + maxFrameLength);
+        }
+        return ProtocolConstant.MESSAGE_HEADER_LENGTH + bodyLength;
     }
 }
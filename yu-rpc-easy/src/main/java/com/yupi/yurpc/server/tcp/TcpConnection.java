@@ -0,0 +1,324 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.ProtocolConstant;
+import com.yupi.yurpc.protocol.ProtocolMessage;
+import com.yupi.yurpc.protocol.ProtocolMessageDecoder;
+import com.yupi.yurpc.protocol.ProtocolMessageEncoder;
+import com.yupi.yurpc.protocol.ProtocolMessageSerializerEnum;
+import com.yupi.yurpc.protocol.ProtocolMessageStatusEnum;
+import com.yupi.yurpc.protocol.ProtocolMessageTypeEnum;
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 连接池中的一条 TCP 长连接
+ * 多路复用：多个请求可同时在途，响应按 requestId 匹配
+ * 连接建立后发送握手消息协商协议版本，协商完成前按 v1 协议发送请求
+ */
+@Slf4j
+public class TcpConnection {
+
+    /**
+     * 握手超时时间（毫秒），超时未收到回复（如对端只支持 v1）则按 v1 协议通信
+     */
+    private static final long HANDSHAKE_TIMEOUT = 3000L;
+
+    private final NetSocket socket;
+
+    private final TcpConnectionPool pool;
+
+    /**
+     * 合并写出请求帧
+     */
+    private final FrameWriter frameWriter;
+
+    /**
+     * 创建时间（毫秒时间戳）
+     */
+    private final long createTime;
+
+    /**
+     * 最后使用时间（毫秒时间戳）
+     */
+    private volatile long lastUsedTime;
+
+    /**
+     * 最后收到数据的时间（毫秒时间戳），用于心跳检测
+     */
+    private volatile long lastReadTime;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * 等待响应的请求
+     */
+    private final PendingCallTable pendingCallTable;
+
+    /**
+     * 方法字典（未启用时为 null）
+     */
+    private final MethodDictionary methodDictionary;
+
+    /**
+     * 协商的协议版本
+     */
+    private final CompletableFuture<Byte> protocolVersionFuture = new CompletableFuture<>();
+
+    TcpConnection(NetSocket socket, TcpConnectionPool pool) {
+        this.socket = socket;
+        this.pool = pool;
+        this.frameWriter = new FrameWriter(socket, pool.getFlushStats());
+        this.createTime = System.currentTimeMillis();
+        this.lastUsedTime = createTime;
+        this.lastReadTime = createTime;
+        this.pendingCallTable = new PendingCallTable(pool::onCallTimeout);
+        this.methodDictionary = Boolean.TRUE.equals(pool.getClientConfig().getMethodDictionary()) ? new MethodDictionary() : null;
+        // 连接建立后只注册一次响应处理器，后续请求复用
+        TcpBufferHandlerWrapper bufferHandlerWrapper = new TcpBufferHandlerWrapper(this::handleResponse);
+        socket.handler(buffer -> {
+            lastReadTime = System.currentTimeMillis();
+            try {
+                bufferHandlerWrapper.handle(buffer);
+            } catch (IllegalStateException e) {
+                // 帧长度非法，无法继续拆分
+                log.error("响应帧非法，关闭连接: {}", socket.remoteAddress(), e);
+                close();
+            }
+        });
+        socket.closeHandler(v -> onClosed(new IOException("连接已关闭")));
+        socket.exceptionHandler(e -> {
+            log.warn("连接异常: {}", socket.remoteAddress(), e);
+            close();
+        });
+        sendHandshake();
+    }
+
+    /**
+     * 发送握手消息，声明本端支持的最高协议版本
+     */
+    private void sendHandshake() {
+        if (!sendControlMessage(ProtocolMessageTypeEnum.HANDSHAKE, ProtocolConstant.MAX_PROTOCOL_VERSION)) {
+            protocolVersionFuture.complete(ProtocolConstant.PROTOCOL_VERSION);
+            return;
+        }
+        protocolVersionFuture.completeOnTimeout(ProtocolConstant.PROTOCOL_VERSION, HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 心跳检测：空闲时发送心跳，长时间没有收到任何数据时关闭连接（对端崩溃、网络中断后连接可能一直不报错）
+     *
+     * @param now
+     * @param heartbeatInterval 心跳间隔，0 表示不发送
+     * @param heartbeatTimeout  心跳超时时间，0 表示不检测
+     * @return 连接是否存活
+     */
+    boolean heartbeat(long now, long heartbeatInterval, long heartbeatTimeout) {
+        if (closed.get()) {
+            return false;
+        }
+        long idleTime = now - lastReadTime;
+        if (heartbeatTimeout > 0 && idleTime > heartbeatTimeout) {
+            log.warn("连接 {} 毫秒未收到数据，视为已失效并关闭: {}", idleTime, socket.remoteAddress());
+            close();
+            return false;
+        }
+        if (heartbeatInterval > 0 && idleTime >= heartbeatInterval) {
+            sendControlMessage(ProtocolMessageTypeEnum.HEART_BEAT, protocolVersionFuture.getNow(ProtocolConstant.PROTOCOL_VERSION));
+        }
+        return true;
+    }
+
+    /**
+     * 发送没有消息体的控制消息（握手、心跳）
+     *
+     * @param type
+     * @param version
+     * @return 是否已发送
+     */
+    private boolean sendControlMessage(ProtocolMessageTypeEnum type, byte version) {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(version);
+        header.setType((byte) type.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        try {
+            frameWriter.write(ProtocolMessageEncoder.encodeDirect(new ProtocolMessage<>(header, null)));
+            return true;
+        } catch (IOException e) {
+            log.warn("{} 消息编码错误: {}", type, socket.remoteAddress(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 发送请求
+     *
+     * @param protocolMessage
+     * @param timeoutMillis   超时时间（毫秒）
+     * @return
+     */
+    CompletableFuture<RpcResponse> send(ProtocolMessage<?> protocolMessage, long timeoutMillis) {
+        Map<String, String> attachments = protocolMessage.getHeader().getAttachments();
+        if (attachments != null && !attachments.isEmpty() && !protocolVersionFuture.isDone()) {
+            // 附加信息只能通过 v2 协议发送，等待握手完成；等待时间计入超时时间，最多等到超时
+            long startTime = System.currentTimeMillis();
+            return protocolVersionFuture.copy()
+                    .completeOnTimeout(ProtocolConstant.PROTOCOL_VERSION, Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS)
+                    .thenCompose(version -> doSend(protocolMessage, timeoutMillis - (System.currentTimeMillis() - startTime)));
+        }
+        return doSend(protocolMessage, timeoutMillis);
+    }
+
+    private CompletableFuture<RpcResponse> doSend(ProtocolMessage<?> protocolMessage, long timeoutMillis) {
+        if (closed.get()) {
+            return CompletableFuture.failedFuture(new IOException("连接已关闭"));
+        }
+        // 超时时间已用完（如等待握手或获取连接期间），不再发送
+        if (timeoutMillis <= 0) {
+            pool.onCallTimeout();
+            return CompletableFuture.failedFuture(new TimeoutException("请求超时，requestId = " + protocolMessage.getHeader().getRequestId()));
+        }
+        ProtocolMessage.Header header = protocolMessage.getHeader();
+        header.setVersion(protocolVersionFuture.getNow(ProtocolConstant.PROTOCOL_VERSION));
+        // v2 协议把剩余超时时间告诉服务端
+        if (header.getVersion() >= ProtocolConstant.PROTOCOL_VERSION_2 && header.getType() == ProtocolMessageTypeEnum.REQUEST.getKey()) {
+            Map<String, String> attachments = header.getAttachments() == null ? new HashMap<>(2) : new HashMap<>(header.getAttachments());
+            attachments.put(ProtocolConstant.TIMEOUT_ATTACHMENT, String.valueOf(timeoutMillis));
+            header.setAttachments(attachments);
+        }
+        long requestId = header.getRequestId();
+        RpcRequest compactRequest = compact(protocolMessage);
+        ByteBuf encodeBuffer;
+        try {
+            encodeBuffer = ProtocolMessageEncoder.encodeDirect(compactRequest == null ? protocolMessage
+                    : new ProtocolMessage<>(protocolMessage.getHeader(), compactRequest));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("协议消息编码错误", e));
+        }
+        lastUsedTime = System.currentTimeMillis();
+        // 先登记再发送，避免响应先于登记到达
+        CompletableFuture<RpcResponse> future = pendingCallTable.register(requestId, timeoutMillis);
+        // 直接写出池化缓冲区，写完由 Netty 释放；同一轮事件循环中的请求合并 flush
+        boolean accepted = frameWriter.write(encodeBuffer, cause -> {
+            // 定义请求没有写出，之后的请求要重新发送完整的方法信息
+            if (compactRequest != null) {
+                methodDictionary.markUndefined(compactRequest);
+            }
+            pendingCallTable.fail(requestId, cause);
+        });
+        // 定义请求已进入写队列，之后同一方法的请求排在它后面，可以只发送编号
+        if (accepted && compactRequest != null) {
+            methodDictionary.markDefined(compactRequest);
+        }
+        // 发送期间连接可能已关闭
+        if (closed.get()) {
+            pendingCallTable.fail(requestId, new IOException("连接已关闭"));
+        }
+        return future;
+    }
+
+    /**
+     * 按方法字典精简请求
+     *
+     * @param protocolMessage
+     * @return 精简后的请求，不适用时为 null
+     */
+    private RpcRequest compact(ProtocolMessage<?> protocolMessage) {
+        // 只有握手确认对端支持 v2 协议（带方法字典）时才精简；v1 或握手超时的对端无法还原方法信息
+        // Json 需要参数类型才能还原参数，不使用方法字典
+        if (methodDictionary == null
+                || protocolMessage.getHeader().getVersion() < ProtocolConstant.PROTOCOL_VERSION_2
+                || !(protocolMessage.getBody() instanceof RpcRequest)
+                || protocolMessage.getHeader().getSerializer() == ProtocolMessageSerializerEnum.JSON.getKey()) {
+            return null;
+        }
+        return methodDictionary.compact((RpcRequest) protocolMessage.getBody());
+    }
+
+    private void handleResponse(Buffer buffer) {
+        ProtocolMessage<RpcResponse> rpcResponseProtocolMessage;
+        try {
+            rpcResponseProtocolMessage = (ProtocolMessage<RpcResponse>) ProtocolMessageDecoder.decode(buffer);
+        } catch (Exception e) {
+            // 无法确定属于哪个请求，连接状态不可信，直接关闭
+            log.error("响应解码错误: {}", socket.remoteAddress(), e);
+            close();
+            return;
+        }
+        ProtocolMessage.Header header = rpcResponseProtocolMessage.getHeader();
+        // 心跳回复只用于刷新最后收到数据的时间
+        if (header.getType() == ProtocolMessageTypeEnum.HEART_BEAT.getKey()) {
+            return;
+        }
+        if (header.getType() == ProtocolMessageTypeEnum.HANDSHAKE.getKey()) {
+            byte version = (byte) Math.min(header.getVersion(), ProtocolConstant.MAX_PROTOCOL_VERSION);
+            log.info("协议版本协商完成: {} v{}", socket.remoteAddress(), version);
+            protocolVersionFuture.complete(version);
+            return;
+        }
+        long requestId = header.getRequestId();
+        if (!pendingCallTable.complete(requestId, rpcResponseProtocolMessage.getBody())) {
+            log.warn("收到无人等待的响应（可能已超时），丢弃: requestId = {}", requestId);
+        }
+    }
+
+    /**
+     * 主动关闭连接
+     */
+    public void close() {
+        if (!closed.get()) {
+            socket.close();
+            onClosed(new IOException("连接已关闭"));
+        }
+    }
+
+    private void onClosed(Throwable cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        pendingCallTable.failAll(cause);
+        // 等待握手的请求随后会因连接关闭而失败
+        protocolVersionFuture.complete(ProtocolConstant.PROTOCOL_VERSION);
+        pool.onConnectionClosed(this);
+    }
+
+    /**
+     * 是否已超过最大存活时间
+     *
+     * @param now
+     * @param maxLifetime 最大存活时间，0 表示不限制
+     * @return
+     */
+    boolean isExpired(long now, long maxLifetime) {
+        return maxLifetime > 0 && now - createTime >= maxLifetime;
+    }
+
+    /**
+     * 在途请求数
+     *
+     * @return
+     */
+    int getPendingCallCount() {
+        return pendingCallTable.size();
+    }
+
+    long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+}
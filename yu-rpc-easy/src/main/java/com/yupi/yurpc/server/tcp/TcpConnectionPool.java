@@ -0,0 +1,279 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.config.ClientConfig;
+import lombok.extern.slf4j.Slf4j;
+import io.vertx.core.net.NetClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 单个服务地址的 TCP 连接池
+ * 连接是多路复用的，不再独占借出：每次选择在途请求最少的连接，
+ * 只有现有连接都在忙且未达上限时才新建连接
+ */
+@Slf4j
+public class TcpConnectionPool {
+
+    private final String host;
+
+    private final int port;
+
+    private final NetClient netClient;
+
+    private final ClientConfig clientConfig;
+
+    /**
+     * 连接槽位（正在建立或已建立的连接）
+     */
+    private final CompletableFuture<TcpConnection>[] slots;
+
+    /**
+     * 超过最大存活时间、等待在途请求完成后关闭的连接
+     */
+    private final List<TcpConnection> drainingConnections = new ArrayList<>();
+
+    private long createdCount;
+
+    private long closedCount;
+
+    private long timeoutCount;
+
+    /**
+     * 池中所有连接的写出合并统计
+     */
+    private final FlushStats flushStats = new FlushStats();
+
+    @SuppressWarnings("unchecked")
+    public TcpConnectionPool(String host, int port, NetClient netClient, ClientConfig clientConfig) {
+        this.host = host;
+        this.port = port;
+        this.netClient = netClient;
+        this.clientConfig = clientConfig;
+        this.slots = new CompletableFuture[Math.max(1, clientConfig.getMaxConnections())];
+    }
+
+    /**
+     * 获取连接（共享，无需归还）
+     *
+     * @return
+     */
+    public synchronized CompletableFuture<TcpConnection> acquire() {
+        long now = System.currentTimeMillis();
+        TcpConnection leastBusy = null;
+        int emptySlot = -1;
+        CompletableFuture<TcpConnection> connecting = null;
+        for (int i = 0; i < slots.length; i++) {
+            CompletableFuture<TcpConnection> slot = slots[i];
+            if (slot == null || slot.isCompletedExceptionally()) {
+                slots[i] = null;
+                if (emptySlot < 0) {
+                    emptySlot = i;
+                }
+                continue;
+            }
+            if (!slot.isDone()) {
+                connecting = slot;
+                continue;
+            }
+            TcpConnection connection = slot.join();
+            if (connection.isClosed()) {
+                slots[i] = null;
+                if (emptySlot < 0) {
+                    emptySlot = i;
+                }
+                continue;
+            }
+            if (connection.isExpired(now, clientConfig.getMaxLifetime())) {
+                // 不再分配新请求，在途请求完成后由回收任务关闭
+                slots[i] = null;
+                drainingConnections.add(connection);
+                if (emptySlot < 0) {
+                    emptySlot = i;
+                }
+                continue;
+            }
+            if (leastBusy == null || connection.getPendingCallCount() < leastBusy.getPendingCallCount()) {
+                leastBusy = connection;
+            }
+        }
+        if (leastBusy != null) {
+            // 现有连接都在忙，后台补充一条连接，本次请求不等待
+            if (leastBusy.getPendingCallCount() > 0 && emptySlot >= 0 && connecting == null) {
+                slots[emptySlot] = connect();
+            }
+            return CompletableFuture.completedFuture(leastBusy);
+        }
+        if (connecting != null) {
+            return connecting;
+        }
+        CompletableFuture<TcpConnection> future = connect();
+        slots[emptySlot] = future;
+        return future;
+    }
+
+    /**
+     * 请求超时回调
+     */
+    synchronized void onCallTimeout() {
+        timeoutCount++;
+    }
+
+    /**
+     * 向空闲连接发送心跳，关闭长时间没有收到数据的失效连接（在途请求随之失败，不会一直等待）
+     *
+     * @return 关闭的连接数
+     */
+    public int checkHeartbeats() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (TcpConnection connection : snapshotConnections()) {
+            if (!connection.heartbeat(now, clientConfig.getHeartbeatInterval(), clientConfig.getHeartbeatTimeout())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 回收空闲过久的连接，以及在途请求已完成的待关闭连接
+     */
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        List<TcpConnection> evictList = new ArrayList<>();
+        synchronized (this) {
+            for (CompletableFuture<TcpConnection> slot : slots) {
+                TcpConnection connection = getIfReady(slot);
+                if (connection != null && connection.getPendingCallCount() == 0
+                        && now - connection.getLastUsedTime() > clientConfig.getIdleTimeout()) {
+                    evictList.add(connection);
+                }
+            }
+            for (TcpConnection connection : drainingConnections) {
+                if (connection.getPendingCallCount() == 0) {
+                    evictList.add(connection);
+                }
+            }
+        }
+        // 关闭后会回调 onConnectionClosed 清理槽位
+        evictList.forEach(TcpConnection::close);
+    }
+
+    /**
+     * 关闭池中所有连接
+     */
+    public void close() {
+        snapshotConnections().forEach(TcpConnection::close);
+    }
+
+    /**
+     * 获取连接池统计信息
+     *
+     * @return
+     */
+    public synchronized TcpConnectionPoolStats getStats() {
+        int totalConnections = drainingConnections.size();
+        int pendingCalls = 0;
+        for (CompletableFuture<TcpConnection> slot : slots) {
+            if (slot == null || slot.isCompletedExceptionally()) {
+                continue;
+            }
+            TcpConnection connection = getIfReady(slot);
+            if (connection == null && slot.isDone()) {
+                continue;
+            }
+            totalConnections++;
+            if (connection != null) {
+                pendingCalls += connection.getPendingCallCount();
+            }
+        }
+        for (TcpConnection connection : drainingConnections) {
+            pendingCalls += connection.getPendingCallCount();
+        }
+        TcpConnectionPoolStats stats = new TcpConnectionPoolStats();
+        stats.setAddress(host + ":" + port);
+        stats.setTotalConnections(totalConnections);
+        stats.setPendingCalls(pendingCalls);
+        stats.setCreatedConnections(createdCount);
+        stats.setClosedConnections(closedCount);
+        stats.setTimeoutCalls(timeoutCount);
+        stats.setWrittenFrames(flushStats.getFrames());
+        stats.setFlushes(flushStats.getFlushes());
+        return stats;
+    }
+
+    ClientConfig getClientConfig() {
+        return clientConfig;
+    }
+
+    FlushStats getFlushStats() {
+        return flushStats;
+    }
+
+    /**
+     * 连接关闭回调（每条连接只会回调一次）
+     *
+     * @param connection
+     */
+    synchronized void onConnectionClosed(TcpConnection connection) {
+        closedCount++;
+        if (drainingConnections.remove(connection)) {
+            return;
+        }
+        for (int i = 0; i < slots.length; i++) {
+            if (getIfReady(slots[i]) == connection) {
+                slots[i] = null;
+                return;
+            }
+        }
+    }
+
+    private synchronized List<TcpConnection> snapshotConnections() {
+        List<TcpConnection> connections = new ArrayList<>(drainingConnections);
+        for (CompletableFuture<TcpConnection> slot : slots) {
+            TcpConnection connection = getIfReady(slot);
+            if (connection != null) {
+                connections.add(connection);
+            }
+        }
+        return connections;
+    }
+
+    /**
+     * 获取已建立且未关闭的连接
+     *
+     * @param slot
+     * @return 未就绪时返回 null
+     */
+    private static TcpConnection getIfReady(CompletableFuture<TcpConnection> slot) {
+        if (slot == null || !slot.isDone() || slot.isCompletedExceptionally()) {
+            return null;
+        }
+        TcpConnection connection = slot.join();
+        return connection.isClosed() ? null : connection;
+    }
+
+    /**
+     * 建立新连接（调用方需持有锁）
+     *
+     * @return
+     */
+    private CompletableFuture<TcpConnection> connect() {
+        CompletableFuture<TcpConnection> future = new CompletableFuture<>();
+        netClient.connect(port, host, result -> {
+            if (result.succeeded()) {
+                synchronized (this) {
+                    createdCount++;
+                }
+                log.info("成功连接到服务器: {}:{}", host, port);
+                future.complete(new TcpConnection(result.result(), this));
+                return;
+            }
+            // 失败的槽位在下次获取连接时重新建立
+            log.error("连接服务器失败: {}:{}", host, port, result.cause());
+            future.completeExceptionally(new RuntimeException("连接失败", result.cause()));
+        });
+        return future;
+    }
+}
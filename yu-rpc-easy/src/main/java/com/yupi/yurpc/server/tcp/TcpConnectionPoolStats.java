@@ -0,0 +1,59 @@
+package com.yupi.yurpc.server.tcp;
+
+import lombok.Data;
+
+/**
+ * 连接池统计信息
+ */
+@Data
+public class TcpConnectionPoolStats {
+
+    /**
+     * 服务地址（host:port）
+     */
+    private String address;
+
+    /**
+     * 连接总数（包括正在建立和等待关闭的连接）
+     */
+    private int totalConnections;
+
+    /**
+     * 在途请求数
+     */
+    private int pendingCalls;
+
+    /**
+     * 累计创建的连接数
+     */
+    private long createdConnections;
+
+    /**
+     * 累计关闭的连接数
+     */
+    private long closedConnections;
+
+    /**
+     * 累计超时的请求数
+     */
+    private long timeoutCalls;
+
+    /**
+     * 累计写出的帧数
+     */
+    private long writtenFrames;
+
+    /**
+     * 累计 flush 次数（同一轮事件循环中写出的帧合并为一次 flush）
+     */
+    private long flushes;
+
+    /**
+     * 平均每次 flush 写出的帧数
+     *
+     * @return
+     */
+    public double getFramesPerFlush() {
+        return flushes == 0 ? 0 : (double) writtenFrames / flushes;
+    }
+}
@@ -1,72 +1,266 @@
 package com.yupi.yurpc.server.tcp;
 
+import com.yupi.yurpc.RpcApplication;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.ProtocolConstant;
 import com.yupi.yurpc.protocol.ProtocolMessage;
 import com.yupi.yurpc.protocol.ProtocolMessageDecoder;
 import com.yupi.yurpc.protocol.ProtocolMessageEncoder;
 import com.yupi.yurpc.protocol.ProtocolMessageTypeEnum;
+import com.yupi.yurpc.proxy.RpcContext;
 import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.server.AsyncResultUtils;
+import com.yupi.yurpc.server.executor.ProviderExecutor;
+import com.yupi.yurpc.server.executor.ProviderExecutorFactory;
+import com.yupi.yurpc.server.invoker.MethodInvoker;
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.Handler;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 public class TcpServerHandler implements Handler<NetSocket> {
 
+    /**
+     * 所有连接的响应写出合并统计
+     */
+    private static final FlushStats FLUSH_STATS = new FlushStats();
+
+    /**
+     * 拒绝请求的告警最短间隔（毫秒），线程池打满时避免日志刷屏
+     */
+    private static final long REJECT_LOG_INTERVAL = 1000L;
+
+    /**
+     * 上次打印拒绝告警的时间
+     */
+    private static final AtomicLong LAST_REJECT_LOG_TIME = new AtomicLong();
+
+    /**
+     * 上次告警之后未打印的拒绝次数
+     */
+    private static final AtomicLong SUPPRESSED_REJECT_COUNT = new AtomicLong();
+
+    /**
+     * 获取响应写出合并统计
+     *
+     * @return
+     */
+    public static FlushStats getFlushStats() {
+        return FLUSH_STATS;
+    }
+
     @Override
     public void handle(NetSocket netSocket) {
-        System.out.println("✅ 客户端连接: " + netSocket.remoteAddress());
+        log.info("客户端连接: {}", netSocket.remoteAddress());
+        // 业务线程写出的响应在事件循环中合并 flush
+        FrameWriter frameWriter = new FrameWriter(netSocket, FLUSH_STATS);
+        ProviderExecutor providerExecutor = ProviderExecutorFactory.getInstance(
+                RpcApplication.getRpcConfig().getServerConfig().getExecutor());
+        // 连接级方法字典，只在本连接的 I/O 线程中访问
+        MethodDictionary methodDictionary = new MethodDictionary();
         
         // 处理连接
         TcpBufferHandlerWrapper bufferHandlerWrapper=new TcpBufferHandlerWrapper(buffer -> {
-            System.out.println("📥 收到请求，长度: " + buffer.length() + " 字节");
+            log.debug("收到请求，长度: {} 字节", buffer.length());
             
             // 接受请求，解码
             ProtocolMessage<RpcRequest> protocolMessage;
             try {
                 protocolMessage = (ProtocolMessage<RpcRequest>) ProtocolMessageDecoder.decode(buffer);
-                System.out.println("✅ 请求解码成功");
             } catch (IOException e) {
-                System.err.println("❌ 协议消息解码错误: " + e.getMessage());
+                log.error("协议消息解码错误: {}", netSocket.remoteAddress(), e);
                 throw new RuntimeException("协议消息解码错误");
             }
+            ProtocolMessage.Header header = protocolMessage.getHeader();
+            if (header.getType() == ProtocolMessageTypeEnum.HANDSHAKE.getKey()) {
+                doHandshake(frameWriter, header);
+                return;
+            }
+            // 心跳原样回复，不经过序列化器和业务线程
+            if (header.getType() == ProtocolMessageTypeEnum.HEART_BEAT.getKey()) {
+                doControlResponse(frameWriter, header);
+                return;
+            }
             RpcRequest rpcRequest = protocolMessage.getBody();
-            System.out.println("📋 调用方法: " + rpcRequest.getServiceName() + "." + rpcRequest.getMethodName());
-
-            // 处理请求
-            // 构造响应结果对象
-            RpcResponse rpcResponse = new RpcResponse();
+            // 按方法编号还原方法信息（必须在 I/O 线程中按到达顺序处理）
+            MethodInvoker methodInvoker;
             try {
-                // 获取要调用的服务实现类，通过反射调用
-                Class<?> implClass = LocalRegistry.get(rpcRequest.getServiceName());
-                Method method = implClass.getMethod(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
-                Object result = method.invoke(implClass.newInstance(), rpcRequest.getArgs());
-                // 封装返回结果
-                rpcResponse.setData(result);
-                rpcResponse.setDataType(method.getReturnType());
-                rpcResponse.setMessage("ok");
-            } catch (Exception e) {
-                e.printStackTrace();
+                methodInvoker = methodDictionary.resolve(rpcRequest);
+            } catch (RuntimeException e) {
+                RpcResponse rpcResponse = new RpcResponse();
                 rpcResponse.setMessage(e.getMessage());
                 rpcResponse.setException(e);
+                doResponse(frameWriter, header, rpcResponse);
+                return;
             }
+            log.debug("调用方法: {}.{}", rpcRequest.getServiceName(), rpcRequest.getMethodName());
+            long deadline = getDeadline(header);
 
-            // 发送响应，编码
-            ProtocolMessage.Header header = protocolMessage.getHeader();
-            header.setType((byte) ProtocolMessageTypeEnum.RESPONSE.getKey());
-            ProtocolMessage<RpcResponse> responseProtocolMessage = new ProtocolMessage<>(header, rpcResponse);
+            // 业务方法交给执行器，I/O 线程只负责编解码
             try {
-                Buffer encode = ProtocolMessageEncoder.encode(responseProtocolMessage);
-                System.out.println("📤 发送响应，长度: " + encode.length() + " 字节");
-                netSocket.write(encode);
-            } catch (IOException e) {
-                System.err.println("❌ 协议消息编码错误: " + e.getMessage());
-                throw new RuntimeException("协议消息编码错误");
+                providerExecutor.execute(rpcRequest.getServiceName(), () -> doInvoke(frameWriter, header, rpcRequest, methodInvoker, deadline));
+            } catch (RejectedExecutionException e) {
+                logRejected(rpcRequest);
+                RpcResponse rpcResponse = new RpcResponse();
+                rpcResponse.setMessage("服务端繁忙，请求被拒绝");
+                rpcResponse.setException(e);
+                doResponse(frameWriter, header, rpcResponse);
+            }
+        });
+        netSocket.handler(buffer -> {
+            try {
+                bufferHandlerWrapper.handle(buffer);
+            } catch (IllegalStateException e) {
+                // 帧长度非法，无法继续拆分
+                log.warn("请求帧非法，关闭连接: {}，{}", netSocket.remoteAddress(), e.getMessage());
+                netSocket.close();
             }
         });
-        netSocket.handler(bufferHandlerWrapper);
+    }
+
+    /**
+     * 打印拒绝请求的告警，每个间隔内最多一条，其余只计数
+     *
+     * @param rpcRequest
+     */
+    private static void logRejected(RpcRequest rpcRequest) {
+        long now = System.currentTimeMillis();
+        long lastLogTime = LAST_REJECT_LOG_TIME.get();
+        if (now - lastLogTime < REJECT_LOG_INTERVAL || !LAST_REJECT_LOG_TIME.compareAndSet(lastLogTime, now)) {
+            SUPPRESSED_REJECT_COUNT.incrementAndGet();
+            return;
+        }
+        log.warn("业务线程池已满，拒绝请求: {}，上次告警后另有 {} 次拒绝", rpcRequest.getServiceName(),
+                SUPPRESSED_REJECT_COUNT.getAndSet(0));
+    }
+
+    /**
+     * 调用服务方法并响应（在业务执行器中执行）
+     *
+     * @param frameWriter
+     * @param header        请求头
+     * @param rpcRequest
+     * @param methodInvoker 方法字典中缓存的方法调用器，没有时为 null
+     * @param deadline      调用方放弃等待的时间（毫秒时间戳），0 表示不限制
+     */
+    private void doInvoke(FrameWriter frameWriter, ProtocolMessage.Header header, RpcRequest rpcRequest, MethodInvoker methodInvoker, long deadline) {
+        // 在队列中等待期间调用方已超时，结果无人接收，直接丢弃
+        if (deadline > 0 && System.currentTimeMillis() > deadline) {
+            log.warn("调用方已超时，丢弃请求: {}.{}，超时 {} 毫秒", rpcRequest.getServiceName(), rpcRequest.getMethodName(),
+                    System.currentTimeMillis() - deadline);
+            return;
+        }
+        // 构造响应结果对象
+        RpcResponse rpcResponse = new RpcResponse();
+        try {
+            // 获取注册时预先构建的方法调用器
+            if (methodInvoker == null) {
+                methodInvoker = LocalRegistry.getMethodInvoker(rpcRequest.getServiceName(), rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+            }
+            // 请求携带的附加信息放入调用上下文，服务方法中可通过 RpcContext 读取
+            RpcContext.setAttachments(header.getAttachments());
+            Object result;
+            try {
+                result = methodInvoker.invoke(rpcRequest.getArgs());
+            } finally {
+                RpcContext.clearAttachments();
+            }
+            // 异步服务：结果完成后再响应，不阻塞当前线程
+            if (result instanceof CompletionStage) {
+                ((CompletionStage<?>) result).whenComplete((value, e) -> {
+                    AsyncResultUtils.fillResponse(rpcResponse, value, e);
+                    doResponse(frameWriter, header, rpcResponse);
+                });
+                return;
+            }
+            // 封装返回结果
+            rpcResponse.setData(result);
+            rpcResponse.setDataType(methodInvoker.getReturnType());
+            rpcResponse.setGenericDataType(methodInvoker.getGenericReturnTypeName());
+            rpcResponse.setMessage("ok");
+        } catch (Exception e) {
+            e.printStackTrace();
+            rpcResponse.setMessage(e.getMessage());
+            rpcResponse.setException(e);
+        }
+        doResponse(frameWriter, header, rpcResponse);
+    }
+
+    /**
+     * 按请求携带的剩余超时时间计算本地截止时间
+     *
+     * @param header
+     * @return 截止时间（毫秒时间戳），没有携带时为 0
+     */
+    private static long getDeadline(ProtocolMessage.Header header) {
+        Map<String, String> attachments = header.getAttachments();
+        String timeout = attachments == null ? null : attachments.get(ProtocolConstant.TIMEOUT_ATTACHMENT);
+        if (timeout == null) {
+            return 0;
+        }
+        try {
+            return System.currentTimeMillis() + Long.parseLong(timeout);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 回复握手：使用双方都支持的最高协议版本
+     *
+     * @param frameWriter
+     * @param header      握手请求头
+     */
+    private void doHandshake(FrameWriter frameWriter, ProtocolMessage.Header header) {
+        header.setVersion((byte) Math.min(header.getVersion(), ProtocolConstant.MAX_PROTOCOL_VERSION));
+        doControlResponse(frameWriter, header);
+    }
+
+    /**
+     * 回复没有消息体的控制消息（握手、心跳）
+     *
+     * @param frameWriter
+     * @param header
+     */
+    private void doControlResponse(FrameWriter frameWriter, ProtocolMessage.Header header) {
+        header.setAttachments(null);
+        header.setRawAttachments(null);
+        try {
+            frameWriter.write(ProtocolMessageEncoder.encodeDirect(new ProtocolMessage<>(header, null)));
+        } catch (IOException e) {
+            log.error("控制消息编码错误: requestId = {}", header.getRequestId(), e);
+        }
+    }
+
+    /**
+     * 发送响应，编码
+     *
+     * @param frameWriter
+     * @param header      请求头（复用 requestId）
+     * @param rpcResponse
+     */
+    private void doResponse(FrameWriter frameWriter, ProtocolMessage.Header header, RpcResponse rpcResponse) {
+        header.setType((byte) ProtocolMessageTypeEnum.RESPONSE.getKey());
+        // 请求的附加信息不需要回传
+        header.setAttachments(null);
+        header.setRawAttachments(null);
+        ProtocolMessage<RpcResponse> responseProtocolMessage = new ProtocolMessage<>(header, rpcResponse);
+        try {
+            ByteBuf encode = ProtocolMessageEncoder.encodeDirect(responseProtocolMessage);
+            log.debug("发送响应，长度: {} 字节", encode.readableBytes());
+            // 直接写出池化缓冲区，写完由 Netty 释放
+            frameWriter.write(encode);
+        } catch (IOException e) {
+            log.error("协议消息编码错误: requestId = {}", header.getRequestId(), e);
+            throw new RuntimeException("协议消息编码错误", e);
+        }
     }
 }
@@ -0,0 +1,31 @@
+package com.yupi.yurpc.server.tcp;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.net.NetServerOptions;
+
+/**
+ * TCP 服务器 Verticle
+ * 每个实例绑定一个事件循环线程，部署多个实例时共享同一端口，新连接在实例之间轮询分配
+ */
+public class TcpServerVerticle extends AbstractVerticle {
+
+    private final int port;
+
+    private final NetServerOptions netServerOptions;
+
+    public TcpServerVerticle(int port, NetServerOptions netServerOptions) {
+        this.port = port;
+        this.netServerOptions = netServerOptions;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        //每个实例使用独立的处理器，连接状态只在所属事件循环线程中访问
+        vertx.createNetServer(netServerOptions)
+                .connectHandler(new TcpServerHandler())
+                .listen(port)
+                .<Void>mapEmpty()
+                .onComplete(startPromise);
+    }
+}
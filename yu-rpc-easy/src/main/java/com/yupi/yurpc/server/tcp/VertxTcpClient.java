@@ -2,87 +2,142 @@ package com.yupi.yurpc.server.tcp;
 
 import cn.hutool.core.util.IdUtil;
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ClientConfig;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.server.VertxHolder;
 import io.vertx.core.Vertx;
 
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetClient;
-import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.NetClientOptions;
 
-import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 /**
  * Vertx tcp 客户端
+ * 共用一个 Vert.x 实例，按服务地址维护长连接池
  */
 public class VertxTcpClient {
 
+    /**
+     * 服务地址 => 连接池
+     */
+    private static final Map<String, TcpConnectionPool> CONNECTION_POOL_MAP = new ConcurrentHashMap<>();
 
     /**
-     * 发送请求
+     * 空闲连接回收周期（毫秒）
      */
-    public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo) throws ExecutionException, InterruptedException {
-        //发送tcp请求
-        Vertx vertx=Vertx.vertx();
-        NetClient netClient=vertx.createNetClient();
-        CompletableFuture<RpcResponse> responseFuture=new CompletableFuture<>();
-        netClient.connect(serviceMetaInfo.getServicePort(),serviceMetaInfo.getServiceHost(),result->{
-           if(!result.succeeded()){
-               System.err.println("❌ 连接服务器失败: " + result.cause().getMessage());
-               responseFuture.completeExceptionally(new RuntimeException("连接失败", result.cause()));
-               return;
-           }
-           System.out.println("✅ 成功连接到服务器: " + serviceMetaInfo.getServiceHost() + ":" + serviceMetaInfo.getServicePort());
-           
-           //连接成功返回一个socket
-            NetSocket socket=result.result();
-           //发送数据
-           //构造消息
-            ProtocolMessage<RpcRequest> protocolMessage=new ProtocolMessage<>();
-            ProtocolMessage.Header header=new ProtocolMessage.Header();
-            header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
-            header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
-            header.setSerializer((byte)ProtocolMessageSerializerEnum.getEnumByValue(RpcApplication.getRpcConfig().getSerializer()).getKey());
-            header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
-            header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
-            //生成全局id
-            header.setRequestId(IdUtil.getSnowflakeNextId());
-            protocolMessage.setHeader( header);
-            protocolMessage.setBody(rpcRequest);
-
-            //编码请求
-            try {
-                Buffer encodeBuffer= ProtocolMessageEncoder.encode(protocolMessage);
-                System.out.println("📤 发送请求，长度: " + encodeBuffer.length() + " 字节");
-                socket.write(encodeBuffer);
-            } catch (IOException e) {
-                System.err.println("❌ 协议消息编码错误: " + e.getMessage());
-                responseFuture.completeExceptionally(new RuntimeException("协议消息编码错误", e));
-                return;
-            }
+    private static final long EVICT_INTERVAL = 10 * 1000L;
+
+    /**
+     * 心跳检测的最小周期（毫秒）
+     */
+    private static final long MIN_HEARTBEAT_CHECK_INTERVAL = 1000L;
+
+    private static volatile NetClient netClient;
 
-            //接收响应
-            TcpBufferHandlerWrapper bufferHandlerWrapper=new TcpBufferHandlerWrapper(buffer->{
-                try {
-                    System.out.println("📥 收到响应，长度: " + buffer.length() + " 字节");
-                    ProtocolMessage<RpcResponse> rpcResponseProtocolMessage= (ProtocolMessage<RpcResponse>) ProtocolMessageDecoder.decode(buffer);
-                    responseFuture.complete(rpcResponseProtocolMessage.getBody());
-                } catch (IOException e) {
-                    System.err.println("❌ 响应解码错误: " + e.getMessage());
-                    responseFuture.completeExceptionally(new RuntimeException("响应解码错误", e));
+    /**
+     * 获取共享的 NetClient，首次调用时启动空闲连接回收和心跳检测任务
+     *
+     * @return
+     */
+    private static NetClient getNetClient() {
+        if (netClient == null) {
+            synchronized (VertxTcpClient.class) {
+                if (netClient == null) {
+                    ClientConfig clientConfig = RpcApplication.getRpcConfig().getClientConfig();
+                    Vertx vertx = VertxHolder.getVertx();
+                    NetClientOptions netClientOptions = new NetClientOptions()
+                            .setConnectTimeout(clientConfig.getConnectTimeout());
+                    VertxHolder.applyTransportConfig(netClientOptions);
+                    vertx.setPeriodic(EVICT_INTERVAL, id ->
+                            CONNECTION_POOL_MAP.values().forEach(TcpConnectionPool::evictIdleConnections));
+                    // 每个心跳间隔内检测若干次，空闲连接按心跳间隔发送心跳
+                    if (clientConfig.getHeartbeatInterval() > 0) {
+                        long checkInterval = Math.max(MIN_HEARTBEAT_CHECK_INTERVAL, clientConfig.getHeartbeatInterval() / 3);
+                        vertx.setPeriodic(checkInterval, id ->
+                                CONNECTION_POOL_MAP.values().forEach(TcpConnectionPool::checkHeartbeats));
+                    }
+                    netClient = vertx.createNetClient(netClientOptions);
                 }
-            });
-            socket.handler(bufferHandlerWrapper);
-        });
-        RpcResponse rpcResponse=responseFuture.get();
-        //关闭连接
-        netClient.close();
-        return rpcResponse;
+            }
+        }
+        return netClient;
+    }
+
+    /**
+     * 获取服务地址对应的连接池
+     *
+     * @param serviceMetaInfo
+     * @return
+     */
+    private static TcpConnectionPool getConnectionPool(ServiceMetaInfo serviceMetaInfo) {
+        String address = serviceMetaInfo.getServiceHost() + ":" + serviceMetaInfo.getServicePort();
+        return CONNECTION_POOL_MAP.computeIfAbsent(address, key -> new TcpConnectionPool(
+                serviceMetaInfo.getServiceHost(),
+                serviceMetaInfo.getServicePort(),
+                getNetClient(),
+                RpcApplication.getRpcConfig().getClientConfig()));
     }
+
+    /**
+     * 获取所有连接池的统计信息
+     *
+     * @return
+     */
+    public static List<TcpConnectionPoolStats> getPoolStats() {
+        return CONNECTION_POOL_MAP.values().stream()
+                .map(TcpConnectionPool::getStats)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 发送请求（阻塞等待响应）
+     */
+    public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo) throws ExecutionException, InterruptedException {
+        return doRequestAsync(rpcRequest, serviceMetaInfo).get();
+    }
+
+    /**
+     * 异步发送请求，不阻塞调用线程
+     *
+     * @param rpcRequest
+     * @param serviceMetaInfo
+     * @return 响应 future
+     */
+    public static CompletableFuture<RpcResponse> doRequestAsync(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo) {
+        //构造消息
+        ProtocolMessage<RpcRequest> protocolMessage=new ProtocolMessage<>();
+        ProtocolMessage.Header header=new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer((byte)ProtocolMessageSerializerEnum.getEnumByValue(RpcApplication.getRpcConfig().getSerializer()).getKey());
+        header.setCompressor((byte)ProtocolMessageCompressorEnum.getEnumByValue(RpcApplication.getRpcConfig().getCompressor()).getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        //生成全局id
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        //附加信息放在消息头中（连接协商为 v2 时发送）
+        header.setAttachments(rpcRequest.getAttachments());
+        protocolMessage.setHeader( header);
+        protocolMessage.setBody(rpcRequest);
+
+        //从连接池获取共享连接并发送请求，响应按 requestId 匹配；获取连接的耗时也计入超时时间
+        ClientConfig clientConfig = RpcApplication.getRpcConfig().getClientConfig();
+        long timeout = rpcRequest.getTimeout() > 0 ? rpcRequest.getTimeout() : clientConfig.getRequestTimeout();
+        long deadline = System.currentTimeMillis() + timeout;
+        return getConnectionPool(serviceMetaInfo).acquire()
+                .thenCompose(connection -> connection.send(protocolMessage, deadline - System.currentTimeMillis()));
+    }
+
     public void start() {
         // 创建 Vert.x 实例
         Vertx vertx = Vertx.vertx();
@@ -1,66 +1,43 @@
 package com.yupi.yurpc.server.tcp;
 
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ServerConfig;
 import com.yupi.yurpc.server.HttpServer;
+import com.yupi.yurpc.server.VertxHolder;
 
-import io.vertx.core.Handler;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
-import io.vertx.core.net.NetServer;
-import io.vertx.core.parsetools.RecordParser;
+import io.vertx.core.net.NetServerOptions;
+
+import java.util.concurrent.TimeUnit;
 
 public class VertxTcpServer implements HttpServer {
 
     @Override
     public void doStart(int port) {
-        //创建vert.x 实例
-        Vertx vertx = Vertx.vertx();
-        //创建TCP服务器
-        NetServer server = vertx.createNetServer();
-
-        //使用正确的TCP服务器处理器
-        server.connectHandler(new TcpServerHandler());
-
-        //处理请求
-    //     server.connectHandler(socket->{
-    //             //构造parser
-    //             RecordParser parser=RecordParser.newFixed(8);
-    //             parser.setOutput(new Handler<Buffer>() {
-    //                 int size=-1;
-    //                 Buffer resultBuffer=Buffer.buffer();
-    //                 @Override
-    //                 public void handle(Buffer buffer) {
-    //                     if(-1==size){
-    //                         //读取消息长度
-    //                         size=buffer.getInt(4);
-    //                         parser.fixedSizeMode(size);
-    //                         //写入头信息到结果
-    //                         resultBuffer.appendBuffer(buffer);
-    //                     }else{
-    //                         //写入体信息到结果
-    //                         resultBuffer.appendBuffer(buffer);
-    //                         //打印结果
-    //                         System.out.println("收到消息："+resultBuffer.toString());
-    //                         //重置状态
-    //                         parser.fixedSizeMode(8);
-    //                         size=-1;
-    //                         resultBuffer=Buffer.buffer(); 
-    //                     }
-    //                 }
-    //             });
-    //             //将socket的数据流交给parser处理
-    //             socket.handler(parser);
-    // });
-       
-
-        //启动TCP服务器并监听指定端口
-        server.listen(port, result -> {
+        //获取共享的 vert.x 实例
+        Vertx vertx = VertxHolder.getVertx();
+        //创建TCP服务器，长时间没有收到数据（包括心跳）的连接自动关闭
+        ServerConfig serverConfig = RpcApplication.getRpcConfig().getServerConfig();
+        NetServerOptions netServerOptions = new NetServerOptions()
+                .setAcceptBacklog(RpcApplication.getRpcConfig().getTransportConfig().getAcceptBacklog());
+        VertxHolder.applyTransportConfig(netServerOptions);
+        if (serverConfig.getIdleTimeout() > 0) {
+            netServerOptions.setReadIdleTimeout(serverConfig.getIdleTimeout().intValue())
+                    .setIdleTimeoutUnit(TimeUnit.MILLISECONDS);
+        }
+        //部署多个服务器实例共享端口，连接分散到多个事件循环线程
+        int instances = Math.max(1, serverConfig.getInstances());
+        vertx.deployVerticle(() -> new TcpServerVerticle(port, netServerOptions),
+                new DeploymentOptions().setInstances(instances), result -> {
             if (result.succeeded()) {
-                System.out.println("TCP服务器启动成功，端口：" + port);
+                System.out.println("TCP服务器启动成功，端口：" + port + "，实例数：" + instances);
             } else {
                 System.err.println("TCP服务器启动失败：" + result.cause());
             }
         });
     }
+
     public static void main(String[] args) {
         VertxTcpServer vertxTcpServer = new VertxTcpServer();
         vertxTcpServer.doStart(8081);
@@ -1,18 +1,171 @@
 package com.yupi.yurpc.protocol;
 
 import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.compressor.Compressor;
+import com.yupi.yurpc.compressor.CompressorFactory;
+import com.yupi.yurpc.compressor.CompressorKeys;
 import com.yupi.yurpc.constant.RpcConstant;
 import com.yupi.yurpc.model.RpcRequest;
+import io.netty.buffer.ByteBuf;
 import io.vertx.core.buffer.Buffer;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ProtocolMessageTest {
 
     @Test
     public void testEncodeAndDecode() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildRequestMessage();
+        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
+        Assert.assertNotNull(message);
+    }
+
+    @Test
+    public void testEncodeDirect() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildRequestMessage();
+        ByteBuf byteBuf = ProtocolMessageEncoder.encodeDirect(protocolMessage);
+        try {
+            Assert.assertTrue(byteBuf.isDirect());
+            // 回填的 body 长度与实际写入的长度一致
+            Assert.assertEquals(byteBuf.readableBytes() - ProtocolConstant.MESSAGE_HEADER_LENGTH, byteBuf.getInt(13));
+            Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
+            Assert.assertEquals(encodeBuffer, Buffer.buffer(byteBuf.copy()));
+            ProtocolMessage<?> message = ProtocolMessageDecoder.decode(Buffer.buffer(byteBuf.copy()));
+            Assert.assertEquals("myMethod", ((RpcRequest) message.getBody()).getMethodName());
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    @Test
+    public void testCompress() throws IOException {
+        for (ProtocolMessageCompressorEnum compressorEnum : new ProtocolMessageCompressorEnum[]{
+                ProtocolMessageCompressorEnum.GZIP, ProtocolMessageCompressorEnum.LZ4}) {
+            // 小消息不压缩，但仍声明压缩器
+            ProtocolMessage<RpcRequest> small = buildRequestMessage();
+            small.getHeader().setCompressor((byte) compressorEnum.getKey());
+            Buffer smallBuffer = ProtocolMessageEncoder.encode(small);
+            Assert.assertEquals(0, smallBuffer.getByte(2) & ProtocolConstant.COMPRESSED_FLAG);
+            Assert.assertEquals(compressorEnum.getKey(), ProtocolMessageDecoder.decode(smallBuffer).getHeader().getCompressor());
+
+            // 大消息超过阈值，压缩后置标志位
+            ProtocolMessage<RpcRequest> large = buildRequestMessage();
+            large.getHeader().setCompressor((byte) compressorEnum.getKey());
+            String arg = StrUtil.repeat("compress-", 2000);
+            large.getBody().setArgs(new Object[]{arg});
+            int uncompressedLength = ProtocolMessageEncoder.encode(buildRequestMessage()).length() + arg.length();
+            Buffer largeBuffer = ProtocolMessageEncoder.encode(large);
+            Assert.assertNotEquals(compressorEnum.name(), 0, largeBuffer.getByte(2) & ProtocolConstant.COMPRESSED_FLAG);
+            Assert.assertTrue(compressorEnum.name(), largeBuffer.length() < uncompressedLength / 4);
+            ProtocolMessage<?> message = ProtocolMessageDecoder.decode(largeBuffer);
+            Assert.assertEquals(ProtocolMessageSerializerEnum.JDK.getKey(), message.getHeader().getSerializer());
+            Assert.assertEquals(compressorEnum.getKey(), message.getHeader().getCompressor());
+            Assert.assertEquals(arg, ((RpcRequest) message.getBody()).getArgs()[0]);
+        }
+    }
+
+    @Test
+    public void testDecompressLimit() throws IOException {
+        byte[] bytes = new byte[10000];
+        for (String compressorKey : new String[]{CompressorKeys.GZIP, CompressorKeys.LZ4}) {
+            Compressor compressor = CompressorFactory.getInstance(compressorKey);
+            byte[] compressed = compressor.compress(bytes);
+            Assert.assertArrayEquals(bytes, compressor.decompress(compressed, bytes.length));
+            // 解压后超过上限（解压炸弹）直接失败
+            try {
+                compressor.decompress(compressed, bytes.length - 1);
+                Assert.fail(compressorKey);
+            } catch (IOException e) {
+                // 预期
+            }
+        }
+    }
+
+    @Test
+    public void testAttachments() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildRequestMessage();
+        protocolMessage.getHeader().setVersion(ProtocolConstant.PROTOCOL_VERSION_2);
+        Map<String, String> attachments = new HashMap<>();
+        attachments.put("traceId", "trace-中文-1");
+        attachments.put("app", "consumer");
+        protocolMessage.getHeader().setAttachments(attachments);
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(ProtocolMessageEncoder.encode(protocolMessage));
+        Assert.assertEquals(ProtocolConstant.PROTOCOL_VERSION_2, message.getHeader().getVersion());
+        // 附加信息在读取时才解析
+        Assert.assertNotNull(message.getHeader().getRawAttachments());
+        Assert.assertEquals(attachments, message.getHeader().getAttachments());
+        Assert.assertNull(message.getHeader().getRawAttachments());
+        Assert.assertEquals("myMethod", ((RpcRequest) message.getBody()).getMethodName());
+
+        // 附加信息不压缩，只压缩消息体
+        protocolMessage.getHeader().setCompressor((byte) ProtocolMessageCompressorEnum.GZIP.getKey());
+        protocolMessage.getBody().setArgs(new Object[]{StrUtil.repeat("compress-", 2000)});
+        message = ProtocolMessageDecoder.decode(ProtocolMessageEncoder.encode(protocolMessage));
+        Assert.assertEquals(attachments, message.getHeader().getAttachments());
+        Assert.assertEquals(protocolMessage.getBody().getArgs()[0], ((RpcRequest) message.getBody()).getArgs()[0]);
+
+        // v1 协议不携带附加信息
+        protocolMessage.getHeader().setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        message = ProtocolMessageDecoder.decode(ProtocolMessageEncoder.encode(protocolMessage));
+        Assert.assertNull(message.getHeader().getAttachments());
+    }
+
+    @Test
+    public void testMalformedAttachments() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildRequestMessage();
+        protocolMessage.getHeader().setVersion(ProtocolConstant.PROTOCOL_VERSION_2);
+        protocolMessage.getHeader().setAttachments(Collections.singletonMap("traceId", "1"));
+        Buffer buffer = ProtocolMessageEncoder.encode(protocolMessage);
+        // 消息头之后依次是标志字节、附加信息长度，然后是第一个键的长度
+        int keyLengthOffset = ProtocolConstant.MESSAGE_HEADER_LENGTH + 1 + 4;
+        buffer.setUnsignedShort(keyLengthOffset, 1000);
+        try {
+            ProtocolMessageDecoder.decode(buffer);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException e) {
+            Assert.fail("附加信息越界应当在解码时报告: " + e);
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("附加信息"));
+        }
+
+        // 截断的附加信息同样报告解码错误，而不是越界
+        Buffer truncated = Buffer.buffer().appendUnsignedShort(7).appendString("trace");
+        try {
+            ProtocolMessageDecoder.decodeAttachments(truncated);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException e) {
+            Assert.fail("附加信息越界应当报告解码错误: " + e);
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("附加信息"));
+        }
+    }
+
+    @Test
+    public void testHandshake() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = buildRequestMessage();
+        protocolMessage.getHeader().setVersion(ProtocolConstant.MAX_PROTOCOL_VERSION);
+        protocolMessage.getHeader().setType((byte) ProtocolMessageTypeEnum.HANDSHAKE.getKey());
+        protocolMessage.setBody(null);
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(ProtocolMessageEncoder.encode(protocolMessage));
+        Assert.assertEquals(ProtocolMessageTypeEnum.HANDSHAKE.getKey(), message.getHeader().getType());
+        Assert.assertNull(message.getBody());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnsupportedVersion() throws IOException {
+        Buffer buffer = ProtocolMessageEncoder.encode(buildRequestMessage());
+        buffer.setByte(1, (byte) (ProtocolConstant.MAX_PROTOCOL_VERSION + 1));
+        ProtocolMessageDecoder.decode(buffer);
+    }
+
+    private static ProtocolMessage<RpcRequest> buildRequestMessage() {
         // 构造消息
         ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
         ProtocolMessage.Header header = new ProtocolMessage.Header();
@@ -31,10 +184,7 @@ public class ProtocolMessageTest {
         rpcRequest.setArgs(new Object[]{"aaa", "bbb"});
         protocolMessage.setHeader(header);
         protocolMessage.setBody(rpcRequest);
-
-        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
-        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
-        Assert.assertNotNull(message);
+        return protocolMessage;
     }
 
 }
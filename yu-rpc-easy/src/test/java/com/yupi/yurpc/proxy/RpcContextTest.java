@@ -0,0 +1,56 @@
+package com.yupi.yurpc.proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 调用上下文测试
+ */
+public class RpcContextTest {
+
+    @Test
+    public void asyncReturnsProxyFuture() throws Exception {
+        CompletableFuture<Object> remoteFuture = new CompletableFuture<>();
+        // 模拟代理：读取异步标记，登记 future 并返回默认值
+        CompletableFuture<Integer> future = RpcContext.async(() -> {
+            Assert.assertTrue(RpcContext.consumeAsyncFlag());
+            RpcContext.setAsyncFuture(remoteFuture);
+            return 0;
+        });
+        Assert.assertSame(remoteFuture, future);
+        Assert.assertFalse(future.isDone());
+        remoteFuture.complete(42);
+        Assert.assertEquals(Integer.valueOf(42), future.get());
+
+        // 标记只对一次调用生效
+        Assert.assertFalse(RpcContext.consumeAsyncFlag());
+    }
+
+    @Test
+    public void asyncWithoutRemoteCall() throws Exception {
+        CompletableFuture<String> future = RpcContext.async(() -> "local");
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals("local", future.get());
+        Assert.assertFalse(RpcContext.consumeAsyncFlag());
+    }
+
+    @Test
+    public void attachments() {
+        Assert.assertNull(RpcContext.snapshotAttachments());
+        RpcContext.setAttachment("traceId", "t-1");
+        Map<String, String> snapshot = RpcContext.snapshotAttachments();
+        // 快照不受之后修改的影响
+        RpcContext.setAttachment("traceId", "t-2");
+        Assert.assertEquals("t-1", snapshot.get("traceId"));
+        Assert.assertEquals("t-2", RpcContext.getAttachment("traceId"));
+
+        RpcContext.setAttachments(snapshot);
+        Assert.assertEquals("t-1", RpcContext.getAttachment("traceId"));
+        RpcContext.clearAttachments();
+        Assert.assertNull(RpcContext.getAttachment("traceId"));
+        Assert.assertTrue(RpcContext.getAttachments().isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.yupi.yurpc.proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 服务代理测试
+ */
+public class ServiceProxyTest {
+
+    public interface DemoService {
+
+        int count();
+
+        CompletableFuture<String> hello(String name);
+    }
+
+    @Test
+    public void methodDescriptor() throws Exception {
+        MethodDescriptor count = new MethodDescriptor(DemoService.class.getName(), DemoService.class.getMethod("count"));
+        Assert.assertFalse(count.isFutureReturnType());
+        Assert.assertEquals(0, count.getDefaultValue());
+
+        MethodDescriptor hello = new MethodDescriptor(DemoService.class.getName(),
+                DemoService.class.getMethod("hello", String.class));
+        Assert.assertTrue(hello.isFutureReturnType());
+        Assert.assertNull(hello.getDefaultValue());
+        Assert.assertArrayEquals(new Class[]{String.class}, hello.getParameterTypes());
+    }
+
+    @Test
+    public void parseTimeouts() {
+        Map<String, Long> timeouts = ServiceProxy.parseTimeouts(" com.demo.UserService = 500 , com.demo.UserService#getUser=100");
+        Assert.assertEquals(Long.valueOf(500), timeouts.get("com.demo.UserService"));
+        Assert.assertEquals(Long.valueOf(100), timeouts.get("com.demo.UserService#getUser"));
+        Assert.assertTrue(ServiceProxy.parseTimeouts(null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseInvalidTimeouts() {
+        ServiceProxy.parseTimeouts("com.demo.UserService");
+    }
+
+    @Test
+    public void objectMethodsAreLocal() {
+        DemoService demoService = ServiceProxyFactory.getProxy(DemoService.class);
+        // 不会发起远程调用
+        Assert.assertEquals("RpcProxy[" + DemoService.class.getName() + "]", demoService.toString());
+        Assert.assertEquals(demoService, demoService);
+        Assert.assertEquals(System.identityHashCode(demoService), demoService.hashCode());
+    }
+}
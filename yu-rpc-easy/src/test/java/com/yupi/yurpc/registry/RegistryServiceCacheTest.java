@@ -0,0 +1,78 @@
+package com.yupi.yurpc.registry;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 注册中心服务本地缓存测试
+ */
+public class RegistryServiceCacheTest {
+
+    @Test
+    public void cachePerServiceKey() {
+        RegistryServiceCache cache = new RegistryServiceCache();
+        ServiceMetaInfo userNode = buildNode("UserService", 8080);
+        ServiceMetaInfo orderNode = buildNode("OrderService", 8081);
+        cache.writeCache(userNode.getServiceKey(), Arrays.asList(userNode));
+        cache.writeCache(orderNode.getServiceKey(), Arrays.asList(orderNode));
+
+        // 不同服务互不干扰
+        Assert.assertEquals(Arrays.asList(userNode), cache.readCache(userNode.getServiceKey()));
+        Assert.assertEquals(Arrays.asList(orderNode), cache.readCache(orderNode.getServiceKey()));
+        Assert.assertNull(cache.readCache("PayService:1.0"));
+    }
+
+    @Test
+    public void patchSingleNode() {
+        RegistryServiceCache cache = new RegistryServiceCache();
+        ServiceMetaInfo node1 = buildNode("UserService", 8080);
+        ServiceMetaInfo node2 = buildNode("UserService", 8081);
+        String serviceKey = node1.getServiceKey();
+        cache.writeCache(serviceKey, Arrays.asList(node1));
+        long version = cache.getSnapshot(serviceKey).getVersion();
+        List<ServiceMetaInfo> before = cache.readCache(serviceKey);
+
+        // 新增节点
+        cache.putNode(serviceKey, node2);
+        Assert.assertEquals(Arrays.asList(node1, node2), cache.readCache(serviceKey));
+        Assert.assertEquals(version + 1, cache.getSnapshot(serviceKey).getVersion());
+        // 旧快照不受影响
+        Assert.assertEquals(Arrays.asList(node1), before);
+
+        // 更新节点
+        ServiceMetaInfo updatedNode1 = buildNode("UserService", 8080);
+        updatedNode1.setUpdateTime(1L);
+        cache.putNode(serviceKey, updatedNode1);
+        Assert.assertSame(updatedNode1, cache.readCache(serviceKey).get(0));
+
+        // 移除节点，其余节点仍在缓存中
+        cache.removeNode(serviceKey, node2.getServiceNodeKey());
+        Assert.assertEquals(Arrays.asList(updatedNode1), cache.readCache(serviceKey));
+        Assert.assertEquals(version + 3, cache.getSnapshot(serviceKey).getVersion());
+
+        // 未缓存的服务忽略单节点变化
+        cache.putNode("PayService:1.0", buildNode("PayService", 8082));
+        Assert.assertNull(cache.readCache("PayService:1.0"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsImmutable() {
+        RegistryServiceCache cache = new RegistryServiceCache();
+        ServiceMetaInfo node = buildNode("UserService", 8080);
+        cache.writeCache(node.getServiceKey(), Arrays.asList(node));
+        cache.readCache(node.getServiceKey()).clear();
+    }
+
+    private ServiceMetaInfo buildNode(String serviceName, int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+}
@@ -0,0 +1,240 @@
+package com.yupi.yurpc.serializer;
+
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 序列化器测试
+ */
+public class SerializerTest {
+
+    private static final Serializer[] SERIALIZERS = {
+            new JdkSerializer(), new JsonSerializer(), new KryoSerializer(), new HessianSerializer(), new ProtostuffSerializer(),
+            new Hessian2Serializer()
+    };
+
+    @Test
+    public void streamAndBytesAreInterchangeable() throws IOException {
+        for (Serializer serializer : SERIALIZERS) {
+            String name = serializer.getClass().getSimpleName();
+            RpcRequest rpcRequest = buildRequest();
+
+            // 流式写出的数据可以按字节数组读回，反之亦然
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            serializer.serialize(rpcRequest, outputStream);
+            RpcRequest fromStream = serializer.deserialize(outputStream.toByteArray(), RpcRequest.class);
+            Assert.assertEquals(name, "echo", fromStream.getMethodName());
+            Assert.assertArrayEquals(name, rpcRequest.getArgs(), fromStream.getArgs());
+
+            byte[] bytes = serializer.serialize(rpcRequest);
+            RpcRequest fromBytes = serializer.deserialize(new ByteArrayInputStream(bytes), RpcRequest.class);
+            Assert.assertEquals(name, "echo", fromBytes.getMethodName());
+
+            RpcResponse rpcResponse = new RpcResponse();
+            rpcResponse.setData("ok");
+            rpcResponse.setDataType(String.class);
+            outputStream = new ByteArrayOutputStream();
+            serializer.serialize(rpcResponse, outputStream);
+            RpcResponse response = serializer.deserialize(new ByteArrayInputStream(outputStream.toByteArray()), RpcResponse.class);
+            Assert.assertEquals(name, "ok", response.getData());
+        }
+    }
+
+    @Test
+    public void legacySerializerUsesDefaultAdapters() throws IOException {
+        // 只实现字节数组接口的序列化器，流式接口由默认方法适配
+        Serializer jdkSerializer = new JdkSerializer();
+        Serializer legacySerializer = new Serializer() {
+            @Override
+            public <T> byte[] serialize(T object) throws IOException {
+                return jdkSerializer.serialize(object);
+            }
+
+            @Override
+            public <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
+                return jdkSerializer.deserialize(bytes, type);
+            }
+        };
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        legacySerializer.serialize(buildRequest(), outputStream);
+        RpcRequest rpcRequest = legacySerializer.deserialize(new ByteArrayInputStream(outputStream.toByteArray()), RpcRequest.class);
+        Assert.assertEquals("echo", rpcRequest.getMethodName());
+    }
+
+    @Test
+    public void kryoWritesRegisteredClassesById() throws IOException {
+        KryoSerializer kryoSerializer = new KryoSerializer();
+        RpcRequest rpcRequest = buildRequest();
+        KryoUser kryoUser = new KryoUser();
+        kryoUser.name = "Bob";
+        rpcRequest.setParameterTypes(new Class[]{KryoUser.class});
+        rpcRequest.setArgs(new Object[]{kryoUser});
+
+        byte[] bytes = kryoSerializer.serialize(rpcRequest);
+        // 已登记的类只写 id，不写类名
+        String payload = new String(bytes, StandardCharsets.ISO_8859_1);
+        Assert.assertFalse(payload.contains(KryoUser.class.getName()));
+        Assert.assertFalse(payload.contains(RpcRequest.class.getName()));
+
+        RpcRequest result = kryoSerializer.deserialize(bytes, RpcRequest.class);
+        Assert.assertEquals(KryoUser.class, result.getParameterTypes()[0]);
+        Assert.assertEquals("Bob", ((KryoUser) result.getArgs()[0]).name);
+    }
+
+    @Test
+    public void kryoPoolIsThreadSafe() throws Exception {
+        KryoSerializer kryoSerializer = new KryoSerializer();
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String methodName = "method" + i;
+                futures.add(executorService.submit(() -> {
+                    RpcRequest rpcRequest = buildRequest();
+                    rpcRequest.setMethodName(methodName);
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    kryoSerializer.serialize(rpcRequest, outputStream);
+                    return kryoSerializer.deserialize(new ByteArrayInputStream(outputStream.toByteArray()), RpcRequest.class).getMethodName();
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Assert.assertEquals("method" + i, futures.get(i).get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void protostuffEncodesDtoWithoutClassName() throws IOException {
+        ProtostuffSerializer protostuffSerializer = new ProtostuffSerializer();
+        UserDto userDto = new UserDto();
+        userDto.name = "Bob";
+        userDto.age = 18;
+        userDto.tags = Arrays.asList("a", "b");
+        RpcRequest rpcRequest = buildRequest();
+        rpcRequest.setParameterTypes(new Class[]{UserDto.class, int.class, String.class, Object.class});
+        rpcRequest.setArgs(new Object[]{userDto, 1, null, 2L});
+
+        byte[] bytes = protostuffSerializer.serialize(rpcRequest);
+        // 参数按声明类型编码，不写入类名
+        String payload = new String(bytes, StandardCharsets.ISO_8859_1);
+        Assert.assertEquals(1, payload.split(java.util.regex.Pattern.quote(UserDto.class.getName()), -1).length - 1);
+        Assert.assertTrue(bytes.length < new HessianSerializer().serialize(rpcRequest).length);
+
+        RpcRequest result = protostuffSerializer.deserialize(bytes, RpcRequest.class);
+        Assert.assertArrayEquals(rpcRequest.getParameterTypes(), result.getParameterTypes());
+        UserDto resultDto = (UserDto) result.getArgs()[0];
+        Assert.assertEquals("Bob", resultDto.name);
+        Assert.assertEquals(18, resultDto.age);
+        Assert.assertEquals(userDto.tags, resultDto.tags);
+        Assert.assertEquals(1, result.getArgs()[1]);
+        Assert.assertNull(result.getArgs()[2]);
+        Assert.assertEquals(2L, result.getArgs()[3]);
+    }
+
+    @Test
+    public void protostuffResponse() throws IOException {
+        ProtostuffSerializer protostuffSerializer = new ProtostuffSerializer();
+        UserDto userDto = new UserDto();
+        userDto.name = "Bob";
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setData(userDto);
+        rpcResponse.setDataType(UserDto.class);
+        rpcResponse.setMessage("ok");
+        RpcResponse result = protostuffSerializer.deserialize(protostuffSerializer.serialize(rpcResponse), RpcResponse.class);
+        Assert.assertEquals("Bob", ((UserDto) result.getData()).name);
+        Assert.assertEquals("ok", result.getMessage());
+
+        // 无返回值和异常
+        rpcResponse = new RpcResponse();
+        rpcResponse.setDataType(void.class);
+        rpcResponse.setException(new IllegalStateException("boom"));
+        result = protostuffSerializer.deserialize(protostuffSerializer.serialize(rpcResponse), RpcResponse.class);
+        Assert.assertNull(result.getData());
+        Assert.assertEquals(void.class, result.getDataType());
+        Assert.assertTrue(result.getException() instanceof IllegalStateException);
+        Assert.assertEquals("boom", result.getException().getMessage());
+    }
+
+    @Test
+    public void jsonParsesArgsAndDataIntoTargetTypes() throws IOException {
+        JsonSerializer jsonSerializer = new JsonSerializer();
+        UserDto userDto = new UserDto();
+        userDto.name = "Bob";
+        RpcRequest rpcRequest = buildRequest();
+        rpcRequest.setParameterTypes(new Class[]{UserDto.class, long.class});
+        rpcRequest.setArgs(new Object[]{userDto, 1L});
+        RpcRequest request = jsonSerializer.deserialize(jsonSerializer.serialize(rpcRequest), RpcRequest.class);
+        Assert.assertEquals("Bob", ((UserDto) request.getArgs()[0]).name);
+        Assert.assertEquals(1L, request.getArgs()[1]);
+
+        // args 写在 parameterTypes 之前也能解析
+        String json = "{\"args\":[{\"name\":\"Tom\"}],\"methodName\":\"echo\",\"parameterTypes\":[\"" + UserDto.class.getName() + "\"]}";
+        request = jsonSerializer.deserialize(json.getBytes(StandardCharsets.UTF_8), RpcRequest.class);
+        Assert.assertEquals("Tom", ((UserDto) request.getArgs()[0]).name);
+
+        // 泛型返回值按完整类型解析
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setData(Arrays.asList(userDto));
+        rpcResponse.setDataType(List.class);
+        rpcResponse.setGenericDataType("java.util.List<" + UserDto.class.getName() + ">");
+        RpcResponse response = jsonSerializer.deserialize(jsonSerializer.serialize(rpcResponse), RpcResponse.class);
+        Assert.assertEquals("Bob", ((List<UserDto>) response.getData()).get(0).name);
+    }
+
+    @Test
+    public void hessian2ReusesPooledStreams() throws IOException {
+        Hessian2Serializer hessian2Serializer = new Hessian2Serializer();
+        UserDto userDto = new UserDto();
+        userDto.name = "Bob";
+        RpcRequest rpcRequest = buildRequest();
+        rpcRequest.setParameterTypes(new Class[]{UserDto.class, UserDto.class});
+        rpcRequest.setArgs(new Object[]{userDto, userDto});
+        // 复用的流之间不残留引用和类定义
+        for (int i = 0; i < 3; i++) {
+            byte[] bytes = hessian2Serializer.serialize(rpcRequest);
+            Assert.assertTrue(bytes.length < new HessianSerializer().serialize(rpcRequest).length);
+            RpcRequest result = hessian2Serializer.deserialize(bytes, RpcRequest.class);
+            // 同一条消息内的引用被保留
+            Assert.assertSame(result.getArgs()[0], result.getArgs()[1]);
+            Assert.assertEquals("Bob", ((UserDto) result.getArgs()[0]).name);
+        }
+    }
+
+    public static class UserDto implements Serializable {
+        public String name;
+        public int age;
+        public List<String> tags;
+    }
+
+    /**
+     * 在测试资源 META-INF/rpc/custom/kryo 中登记的类
+     */
+    public static class KryoUser {
+        private String name;
+    }
+
+    private static RpcRequest buildRequest() {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName("myService");
+        rpcRequest.setMethodName("echo");
+        rpcRequest.setParameterTypes(new Class[]{String.class, Integer.class});
+        rpcRequest.setArgs(new Object[]{"aaa", 1});
+        return rpcRequest;
+    }
+}
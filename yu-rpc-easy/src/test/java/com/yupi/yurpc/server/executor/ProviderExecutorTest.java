@@ -0,0 +1,116 @@
+package com.yupi.yurpc.server.executor;
+
+import com.yupi.yurpc.config.ServerConfig;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务提供者业务执行器测试
+ */
+public class ProviderExecutorTest {
+
+    @Test
+    public void abortWhenQueueFull() throws Exception {
+        ServerConfig serverConfig = new ServerConfig();
+        serverConfig.setWorkerThreads(1);
+        serverConfig.setQueueCapacity(1);
+        ThreadPoolExecutor threadPool = FixedProviderExecutor.createThreadPool("test-", serverConfig);
+        CountDownLatch block = new CountDownLatch(1);
+        try {
+            // 一个在执行，一个在排队
+            threadPool.execute(() -> await(block));
+            threadPool.execute(() -> await(block));
+            try {
+                threadPool.execute(() -> {
+                });
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                // 预期被拒绝
+            }
+        } finally {
+            block.countDown();
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void callerRunsWhenQueueFull() {
+        ServerConfig serverConfig = new ServerConfig();
+        serverConfig.setWorkerThreads(1);
+        serverConfig.setQueueCapacity(0);
+        serverConfig.setRejectPolicy(RejectPolicyKeys.CALLER_RUNS);
+        ThreadPoolExecutor threadPool = FixedProviderExecutor.createThreadPool("test-", serverConfig);
+        CountDownLatch block = new CountDownLatch(1);
+        try {
+            threadPool.execute(() -> await(block));
+            Thread[] runner = new Thread[1];
+            threadPool.execute(() -> runner[0] = Thread.currentThread());
+            Assert.assertSame(Thread.currentThread(), runner[0]);
+        } finally {
+            block.countDown();
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void virtualThreadMaxConcurrency() {
+        // 虚拟线程需要 JDK 21+
+        Assume.assumeTrue(Runtime.version().feature() >= 21);
+        ServerConfig serverConfig = new ServerConfig();
+        serverConfig.setQueueCapacity(0);
+        serverConfig.setMaxConcurrency(1);
+        VirtualThreadProviderExecutor providerExecutor = new VirtualThreadProviderExecutor(serverConfig);
+        CountDownLatch block = new CountDownLatch(1);
+        try {
+            // 并发上限与队列容量无关
+            providerExecutor.execute("com.example.DemoService", () -> await(block));
+            try {
+                providerExecutor.execute("com.example.DemoService", () -> {
+                });
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                // 预期被拒绝
+            }
+        } finally {
+            block.countDown();
+        }
+    }
+
+    @Test
+    public void bulkheadIsolatesServices() throws Exception {
+        ProviderExecutor providerExecutor = ProviderExecutorFactory.getInstance(ProviderExecutorKeys.BULKHEAD);
+        CountDownLatch block = new CountDownLatch(1);
+        String[] threadNames = new String[2];
+        CountDownLatch done = new CountDownLatch(2);
+        providerExecutor.execute("com.example.SlowService", () -> {
+            threadNames[0] = Thread.currentThread().getName();
+            done.countDown();
+            await(block);
+        });
+        providerExecutor.execute("com.example.FastService", () -> {
+            threadNames[1] = Thread.currentThread().getName();
+            done.countDown();
+        });
+        try {
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(threadNames[0].startsWith("rpc-provider-SlowService-"));
+            Assert.assertTrue(threadNames[1].startsWith("rpc-provider-FastService-"));
+        } finally {
+            block.countDown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.yupi.yurpc.server.invoker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 服务调用器测试
+ */
+public class ServiceInvokerTest {
+
+    public static class CalcServiceImpl {
+
+        private int count;
+
+        public int add(int a, int b) {
+            count++;
+            return a + b;
+        }
+
+        public String add(String a, String b) {
+            count++;
+            return a + b;
+        }
+
+        public void reset() {
+            count = 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public String fail() {
+            throw new IllegalStateException("业务异常");
+        }
+    }
+
+    @Test
+    public void invokeOverloads() throws Exception {
+        CalcServiceImpl service = new CalcServiceImpl();
+        ServiceInvoker serviceInvoker = new ServiceInvoker(CalcServiceImpl.class, service);
+
+        MethodInvoker intAdd = serviceInvoker.getMethodInvoker("add", new Class[]{int.class, int.class});
+        Assert.assertEquals(3, intAdd.invoke(new Object[]{1, 2}));
+        Assert.assertEquals(int.class, intAdd.getReturnType());
+
+        MethodInvoker stringAdd = serviceInvoker.getMethodInvoker("add", new Class[]{String.class, String.class});
+        Assert.assertEquals("ab", stringAdd.invoke(new Object[]{"a", "b"}));
+
+        Assert.assertNull(serviceInvoker.getMethodInvoker("add", new Class[]{long.class, long.class}));
+        Assert.assertNull(serviceInvoker.getMethodInvoker("missing", null));
+
+        // 复用同一个服务实例
+        Assert.assertEquals(2, serviceInvoker.getMethodInvoker("getCount", null).invoke(null));
+        Assert.assertNull(serviceInvoker.getMethodInvoker("reset", new Class[0]).invoke(new Object[0]));
+        Assert.assertEquals(0, service.getCount());
+    }
+
+    @Test
+    public void exceptionNotWrapped() {
+        ServiceInvoker serviceInvoker = new ServiceInvoker(CalcServiceImpl.class, new CalcServiceImpl());
+        try {
+            serviceInvoker.getMethodInvoker("fail", null).invoke(null);
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e instanceof IllegalStateException);
+            Assert.assertEquals("业务异常", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.yupi.yurpc.server.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 合并写出测试
+ */
+public class FrameWriterTest {
+
+    private static final long MAX_PENDING_BYTES = 1024;
+
+    @Test
+    public void coalesceFlush() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        FlushStats flushStats = new FlushStats();
+        FrameWriter frameWriter = new FrameWriter(channel.pipeline().firstContext(), flushStats, MAX_PENDING_BYTES);
+
+        // 同一轮写入的帧只 flush 一次，顺序不变
+        for (int i = 0; i < 3; i++) {
+            frameWriter.write(Unpooled.buffer().writeInt(i));
+        }
+        Assert.assertTrue(channel.outboundMessages().isEmpty());
+        channel.runPendingTasks();
+        for (int i = 0; i < 3; i++) {
+            ByteBuf frame = channel.readOutbound();
+            Assert.assertEquals(i, frame.readInt());
+            frame.release();
+        }
+        Assert.assertEquals(3, flushStats.getFrames());
+        Assert.assertEquals(1, flushStats.getFlushes());
+
+        frameWriter.write(Unpooled.buffer().writeInt(3));
+        channel.runPendingTasks();
+        ((ByteBuf) channel.readOutbound()).release();
+        Assert.assertEquals(2, flushStats.getFlushes());
+        Assert.assertEquals(2.0, flushStats.getFramesPerFlush(), 0.001);
+    }
+
+    @Test
+    public void rejectWhenPendingBytesExceeded() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        FrameWriter frameWriter = new FrameWriter(channel.pipeline().firstContext(), new FlushStats(), MAX_PENDING_BYTES);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        frameWriter.write(Unpooled.buffer().writeZero(1000));
+        ByteBuf rejected = Unpooled.buffer().writeZero(100);
+        frameWriter.write(rejected, failure::set);
+        Assert.assertTrue(failure.get() instanceof IOException);
+        Assert.assertEquals(0, rejected.refCnt());
+
+        // 写出后额度释放
+        channel.runPendingTasks();
+        ((ByteBuf) channel.readOutbound()).release();
+        failure.set(null);
+        frameWriter.write(Unpooled.buffer().writeZero(100), failure::set);
+        channel.runPendingTasks();
+        Assert.assertNull(failure.get());
+        ((ByteBuf) channel.readOutbound()).release();
+    }
+
+    @Test
+    public void writeFailure() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ChannelHandlerContext ctx = channel.pipeline().firstContext();
+        FrameWriter frameWriter = new FrameWriter(ctx, new FlushStats(), MAX_PENDING_BYTES);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        channel.close();
+
+        ByteBuf frame = Unpooled.buffer().writeInt(1);
+        frameWriter.write(frame, failure::set);
+        channel.runPendingTasks();
+        Assert.assertNotNull(failure.get());
+        Assert.assertEquals(0, frame.refCnt());
+    }
+}
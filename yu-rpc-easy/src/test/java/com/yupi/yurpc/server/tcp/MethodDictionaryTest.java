@@ -0,0 +1,77 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.serializer.Serializer;
+import com.yupi.yurpc.serializer.SerializerFactory;
+import com.yupi.yurpc.serializer.SerializerKeys;
+import com.yupi.yurpc.server.invoker.MethodInvoker;
+import com.yupi.yurpc.server.invoker.ServiceInvokerTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 连接级方法字典测试
+ */
+public class MethodDictionaryTest {
+
+    private static final String SERVICE_NAME = "methodDictionaryTestService";
+
+    @Test
+    public void compactAndResolve() throws Exception {
+        LocalRegistry.register(SERVICE_NAME, ServiceInvokerTest.CalcServiceImpl.class);
+        for (String serializerKey : new String[]{SerializerKeys.JDK, SerializerKeys.KRYO, SerializerKeys.HESSIAN,
+                SerializerKeys.PROTOSTUFF, SerializerKeys.HESSIAN2}) {
+            Serializer serializer = SerializerFactory.getInstance(serializerKey);
+            MethodDictionary client = new MethodDictionary();
+            MethodDictionary server = new MethodDictionary();
+
+            // 定义请求写出前，同一方法仍发送完整请求
+            RpcRequest definition = client.compact(buildRequest(1, 2));
+            Assert.assertEquals(definition, client.compact(buildRequest(1, 2)));
+            Assert.assertEquals(1, definition.getMethodId());
+            Assert.assertEquals(SERVICE_NAME, definition.getServiceName());
+            byte[] definitionBytes = serializer.serialize(definition);
+            MethodInvoker methodInvoker = server.resolve(serializer.deserialize(definitionBytes, RpcRequest.class));
+            Assert.assertNotNull(methodInvoker);
+            client.markDefined(definition);
+
+            // 之后只发送编号和参数
+            RpcRequest compact = client.compact(buildRequest(3, 4));
+            Assert.assertEquals(1, compact.getMethodId());
+            Assert.assertNull(compact.getServiceName());
+            Assert.assertNull(compact.getMethodName());
+            Assert.assertNull(compact.getParameterTypes());
+            byte[] compactBytes = serializer.serialize(compact);
+            Assert.assertTrue(serializerKey, compactBytes.length < definitionBytes.length);
+
+            RpcRequest received = serializer.deserialize(compactBytes, RpcRequest.class);
+            Assert.assertSame(methodInvoker, server.resolve(received));
+            Assert.assertEquals(SERVICE_NAME, received.getServiceName());
+            Assert.assertEquals("add", received.getMethodName());
+            Assert.assertEquals(7, methodInvoker.invoke(received.getArgs()));
+
+            // 不同的方法分配新编号
+            RpcRequest other = buildRequest(1, 2);
+            other.setParameterTypes(new Class[]{String.class, String.class});
+            Assert.assertEquals(2, client.compact(other).getMethodId());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void undefinedMethodId() {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(null);
+        rpcRequest.setMethodId(5);
+        new MethodDictionary().resolve(rpcRequest);
+    }
+
+    private static RpcRequest buildRequest(int a, int b) {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(SERVICE_NAME);
+        rpcRequest.setMethodName("add");
+        rpcRequest.setParameterTypes(new Class[]{int.class, int.class});
+        rpcRequest.setArgs(new Object[]{a, b});
+        return rpcRequest;
+    }
+}
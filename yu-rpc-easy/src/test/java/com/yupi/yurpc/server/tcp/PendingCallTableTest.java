@@ -0,0 +1,85 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.model.RpcResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 等待响应的请求表测试
+ */
+public class PendingCallTableTest {
+
+    @Test
+    public void completeByRequestId() throws Exception {
+        PendingCallTable table = new PendingCallTable();
+        CompletableFuture<RpcResponse> future1 = table.register(1L, 60000L);
+        CompletableFuture<RpcResponse> future2 = table.register(2L, 60000L);
+        Assert.assertEquals(2, table.size());
+
+        // 响应乱序到达
+        RpcResponse response2 = new RpcResponse();
+        response2.setData("2");
+        Assert.assertTrue(table.complete(2L, response2));
+        Assert.assertFalse(future1.isDone());
+        Assert.assertSame(response2, future2.get());
+
+        RpcResponse response1 = new RpcResponse();
+        response1.setData("1");
+        Assert.assertTrue(table.complete(1L, response1));
+        Assert.assertSame(response1, future1.get());
+
+        // 重复或未知的响应被忽略
+        Assert.assertFalse(table.complete(1L, response1));
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void expire() throws Exception {
+        AtomicInteger timeoutCount = new AtomicInteger();
+        PendingCallTable table = new PendingCallTable(timeoutCount::incrementAndGet);
+        CompletableFuture<RpcResponse> expired = table.register(1L, 50L);
+        CompletableFuture<RpcResponse> alive = table.register(2L, 60000L);
+
+        try {
+            expired.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        Assert.assertFalse(alive.isDone());
+        Assert.assertEquals(1, table.size());
+        Assert.assertEquals(1, timeoutCount.get());
+
+        // 已完成的请求不再超时
+        CompletableFuture<RpcResponse> completed = table.register(3L, 50L);
+        Assert.assertTrue(table.complete(3L, new RpcResponse()));
+        Thread.sleep(200);
+        Assert.assertFalse(completed.isCompletedExceptionally());
+        Assert.assertEquals(1, timeoutCount.get());
+    }
+
+    @Test
+    public void failAll() {
+        PendingCallTable table = new PendingCallTable();
+        CompletableFuture<RpcResponse> future1 = table.register(1L, 60000L);
+        CompletableFuture<RpcResponse> future2 = table.register(2L, 60000L);
+
+        table.failAll(new IOException("连接已关闭"));
+        Assert.assertEquals(0, table.size());
+        for (CompletableFuture<RpcResponse> future : new CompletableFuture[]{future1, future2}) {
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException | InterruptedException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.protocol.ProtocolConstant;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TCP 帧拆分器测试
+ */
+public class TcpBufferHandlerWrapperTest {
+
+    private static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    @Test
+    public void splitFrames() {
+        Buffer stream = Buffer.buffer();
+        List<Buffer> expected = new ArrayList<>();
+        for (int bodyLength : new int[]{0, 1, 17, 300, 5000}) {
+            Buffer frame = buildFrame(bodyLength);
+            expected.add(frame);
+            stream.appendBuffer(frame);
+        }
+        // 不同的读取粒度：逐字节、半包、粘包、一次全部到达
+        for (int chunkSize : new int[]{1, 7, 16, 17, 18, 333, stream.length()}) {
+            List<Buffer> frames = new ArrayList<>();
+            TcpBufferHandlerWrapper wrapper = new TcpBufferHandlerWrapper(frames::add, MAX_FRAME_LENGTH);
+            for (int i = 0; i < stream.length(); i += chunkSize) {
+                wrapper.handle(stream.getBuffer(i, Math.min(i + chunkSize, stream.length())));
+            }
+            Assert.assertEquals("chunkSize=" + chunkSize, expected, frames);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void illegalBodyLength() {
+        Buffer frame = buildFrame(0);
+        frame.setInt(13, -1);
+        new TcpBufferHandlerWrapper(buffer -> {
+        }, MAX_FRAME_LENGTH).handle(frame);
+    }
+
+    @Test
+    public void frameTooLong() {
+        List<Buffer> frames = new ArrayList<>();
+        TcpBufferHandlerWrapper wrapper = new TcpBufferHandlerWrapper(frames::add, 1024);
+        Buffer frame = buildFrame(16);
+        frame.setInt(13, Integer.MAX_VALUE);
+        try {
+            // 只到达消息头，不会按声明的长度分配暂存区
+            wrapper.handle(frame.getBuffer(0, ProtocolConstant.MESSAGE_HEADER_LENGTH));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // 预期
+        }
+        // 之后的数据全部丢弃
+        wrapper.handle(buildFrame(0));
+        Assert.assertTrue(frames.isEmpty());
+    }
+
+    @Test
+    public void allocatedBytesPerFrame() {
+        int bodyLength = 4096;
+        int frameCount = 1000;
+        Buffer frame = buildFrame(bodyLength);
+        Buffer stream = Buffer.buffer();
+        for (int i = 0; i < frameCount; i++) {
+            stream.appendBuffer(frame);
+        }
+        int frameLength = frame.length();
+        // 预热，排除类加载和 JIT 的分配
+        for (int i = 0; i < 5; i++) {
+            measureAllocatedBytes(stream, frameLength);
+            measureAllocatedBytes(stream, frameLength * 3 / 2);
+        }
+
+        // 分配量与 JVM 和 JIT 有关，只做宽松的数量级检查
+        // 整帧到达：只分配切片对象，不复制帧内容
+        long aligned = measureAllocatedBytes(stream, frameLength) / frameCount;
+        Assert.assertTrue("aligned=" + aligned, aligned < frameLength / 2);
+
+        // 帧跨越多次读取：每帧最多复制一次
+        long split = measureAllocatedBytes(stream, frameLength * 3 / 2) / frameCount;
+        Assert.assertTrue("split=" + split, split < frameLength * 2);
+    }
+
+    /**
+     * 按指定粒度把数据交给拆分器，返回拆分过程中当前线程分配的字节数
+     */
+    private static long measureAllocatedBytes(Buffer stream, int chunkSize) {
+        List<Buffer> chunks = new ArrayList<>();
+        for (int i = 0; i < stream.length(); i += chunkSize) {
+            chunks.add(stream.slice(i, Math.min(i + chunkSize, stream.length())));
+        }
+        int[] count = new int[1];
+        TcpBufferHandlerWrapper wrapper = new TcpBufferHandlerWrapper(buffer -> count[0]++, MAX_FRAME_LENGTH);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (Buffer chunk : chunks) {
+            wrapper.handle(chunk);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertTrue(count[0] > 0);
+        return allocated;
+    }
+
+    private static Buffer buildFrame(int bodyLength) {
+        Buffer frame = Buffer.buffer(ProtocolConstant.MESSAGE_HEADER_LENGTH + bodyLength);
+        frame.appendByte(ProtocolConstant.PROTOCOL_MAGIC)
+                .appendByte(ProtocolConstant.PROTOCOL_VERSION)
+                .appendByte((byte) 0)
+                .appendByte((byte) 0)
+                .appendByte((byte) 0)
+                .appendLong(bodyLength)
+                .appendInt(bodyLength);
+        for (int i = 0; i < bodyLength; i++) {
+            frame.appendByte((byte) i);
+        }
+        return frame;
+    }
+}
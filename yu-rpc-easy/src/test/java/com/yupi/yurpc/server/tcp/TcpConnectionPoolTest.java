@@ -0,0 +1,298 @@
+package com.yupi.yurpc.server.tcp;
+
+import cn.hutool.core.util.IdUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ClientConfig;
+import com.yupi.yurpc.config.TransportConfig;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.server.VertxHolder;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 连接池测试
+ */
+public class TcpConnectionPoolTest {
+
+    private NetServer netServer;
+
+    private NetClient netClient;
+
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        Vertx vertx = VertxHolder.getVertx();
+        // 只接受连接，不做任何处理
+        netServer = vertx.createNetServer().connectHandler(socket -> {
+        });
+        port = netServer.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        netClient = vertx.createNetClient();
+    }
+
+    @After
+    public void tearDown() {
+        netClient.close();
+        netServer.close();
+    }
+
+    @Test
+    public void shareConnection() throws Exception {
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setMaxConnections(2);
+        TcpConnectionPool pool = new TcpConnectionPool("localhost", port, netClient, clientConfig);
+
+        // 空闲连接直接共享，不新建
+        TcpConnection connection1 = pool.acquire().get(5, TimeUnit.SECONDS);
+        Assert.assertSame(connection1, pool.acquire().get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, pool.getStats().getTotalConnections());
+
+        // 服务端不响应，请求一直在途
+        connection1.send(buildMessage(), 60000L);
+        Assert.assertEquals(1, pool.getStats().getPendingCalls());
+
+        // 现有连接在忙，本次仍返回该连接，同时后台新建一条
+        Assert.assertSame(connection1, pool.acquire().get(5, TimeUnit.SECONDS));
+        TcpConnection connection2 = null;
+        for (int i = 0; i < 100 && (connection2 == null || connection2 == connection1); i++) {
+            Thread.sleep(20);
+            connection2 = pool.acquire().get(5, TimeUnit.SECONDS);
+        }
+        Assert.assertNotSame(connection1, connection2);
+
+        TcpConnectionPoolStats stats = pool.getStats();
+        Assert.assertEquals(2, stats.getTotalConnections());
+        Assert.assertEquals(2, stats.getCreatedConnections());
+    }
+
+    @Test
+    public void callTimeout() throws Exception {
+        TcpConnectionPool pool = new TcpConnectionPool("localhost", port, netClient, new ClientConfig());
+
+        TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+        CompletableFuture<RpcResponse> future = connection.send(buildMessage(), 50L);
+
+        // 由时间轮触发超时，不需要定时扫描
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        TcpConnectionPoolStats stats = pool.getStats();
+        Assert.assertEquals(0, stats.getPendingCalls());
+        Assert.assertEquals(1, stats.getTimeoutCalls());
+        // 超时不影响连接本身
+        Assert.assertFalse(connection.isClosed());
+    }
+
+    @Test
+    public void handshakeWaitCountsTowardsTimeout() throws Exception {
+        // 测试服务端不回复握手，带附加信息的请求最多等到自身超时，而不是握手超时
+        TcpConnectionPool pool = new TcpConnectionPool("localhost", port, netClient, new ClientConfig());
+        TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+        ProtocolMessage<RpcRequest> protocolMessage = buildMessage();
+        protocolMessage.getHeader().setAttachments(Collections.singletonMap("traceId", "1"));
+
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<RpcResponse> future = connection.send(protocolMessage, 200L);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - startTime < 2000);
+        Assert.assertEquals(1, pool.getStats().getTimeoutCalls());
+        Assert.assertEquals(0, pool.getStats().getPendingCalls());
+    }
+
+    @Test
+    public void evictIdleConnections() throws Exception {
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setIdleTimeout(0L);
+        TcpConnectionPool pool = new TcpConnectionPool("localhost", port, netClient, clientConfig);
+
+        TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+        Thread.sleep(10);
+        pool.evictIdleConnections();
+
+        Assert.assertTrue(connection.isClosed());
+        TcpConnectionPoolStats stats = pool.getStats();
+        Assert.assertEquals(0, stats.getTotalConnections());
+        Assert.assertEquals(1, stats.getClosedConnections());
+    }
+
+    @Test
+    public void heartbeatTimeout() throws Exception {
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.setHeartbeatInterval(50L);
+        clientConfig.setHeartbeatTimeout(200L);
+        TcpConnectionPool pool = new TcpConnectionPool("localhost", port, netClient, clientConfig);
+
+        // 服务端不回复心跳，模拟已失效的对端
+        TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+        CompletableFuture<RpcResponse> future = connection.send(buildMessage(), 60000L);
+        Assert.assertEquals(0, pool.checkHeartbeats());
+        Thread.sleep(300);
+        Assert.assertEquals(1, pool.checkHeartbeats());
+
+        Assert.assertTrue(connection.isClosed());
+        // 在途请求立即失败，不会等到请求超时
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void heartbeatKeepsConnectionAlive() throws Exception {
+        // 提前加载配置，避免服务端处理首个连接时阻塞事件循环
+        RpcApplication.getRpcConfig();
+        NetServer rpcServer = VertxHolder.getVertx().createNetServer().connectHandler(new TcpServerHandler());
+        int rpcPort = rpcServer.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            ClientConfig clientConfig = new ClientConfig();
+            clientConfig.setHeartbeatInterval(50L);
+            clientConfig.setHeartbeatTimeout(300L);
+            TcpConnectionPool pool = new TcpConnectionPool("localhost", rpcPort, netClient, clientConfig);
+
+            TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 10; i++) {
+                Thread.sleep(60);
+                Assert.assertEquals(0, pool.checkHeartbeats());
+            }
+            Assert.assertFalse(connection.isClosed());
+        } finally {
+            rpcServer.close();
+        }
+    }
+
+    @Test
+    public void noMethodDictionaryBeforeHandshake() throws Exception {
+        // 只记录收到的请求，不回复握手（相当于只支持 v1 的服务端）
+        List<RpcRequest> requests = new CopyOnWriteArrayList<>();
+        NetServer v1Server = VertxHolder.getVertx().createNetServer().connectHandler(socket ->
+                socket.handler(new TcpBufferHandlerWrapper(buffer -> {
+                    try {
+                        ProtocolMessage<?> protocolMessage = ProtocolMessageDecoder.decode(buffer);
+                        if (protocolMessage.getHeader().getType() == ProtocolMessageTypeEnum.REQUEST.getKey()) {
+                            requests.add((RpcRequest) protocolMessage.getBody());
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, 1024 * 1024)));
+        int v1Port = v1Server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        try {
+            TcpConnectionPool pool = new TcpConnectionPool("localhost", v1Port, netClient, new ClientConfig());
+            TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+            connection.send(buildMessage(), 60000L);
+            connection.send(buildMessage(), 60000L);
+            for (int i = 0; i < 100 && requests.size() < 2; i++) {
+                Thread.sleep(20);
+            }
+            Assert.assertEquals(2, requests.size());
+            // 未协商到 v2，每个请求都带完整的方法信息
+            for (RpcRequest rpcRequest : requests) {
+                Assert.assertEquals(0, rpcRequest.getMethodId());
+                Assert.assertEquals("myService", rpcRequest.getServiceName());
+                Assert.assertEquals("myMethod", rpcRequest.getMethodName());
+            }
+        } finally {
+            v1Server.close();
+        }
+    }
+
+    @Test
+    public void rejectedDefinitionIsResent() throws Exception {
+        // 记录收到的请求，并按 v2 回复握手
+        List<RpcRequest> requests = new CopyOnWriteArrayList<>();
+        NetServer v2Server = VertxHolder.getVertx().createNetServer().connectHandler(socket ->
+                socket.handler(new TcpBufferHandlerWrapper(buffer -> {
+                    try {
+                        ProtocolMessage<?> protocolMessage = ProtocolMessageDecoder.decode(buffer);
+                        ProtocolMessage.Header header = protocolMessage.getHeader();
+                        if (header.getType() == ProtocolMessageTypeEnum.HANDSHAKE.getKey()) {
+                            socket.write(ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, null)));
+                        } else if (header.getType() == ProtocolMessageTypeEnum.REQUEST.getKey()) {
+                            requests.add((RpcRequest) protocolMessage.getBody());
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, 1024 * 1024)));
+        int v2Port = v2Server.listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS).actualPort();
+        TransportConfig transportConfig = RpcApplication.getRpcConfig().getTransportConfig();
+        long maxPendingWriteBytes = transportConfig.getMaxPendingWriteBytes();
+        try {
+            // 写缓冲区上限在建连时读取
+            transportConfig.setMaxPendingWriteBytes(4096);
+            TcpConnectionPool pool = new TcpConnectionPool("localhost", v2Port, netClient, new ClientConfig());
+            TcpConnection connection = pool.acquire().get(5, TimeUnit.SECONDS);
+            transportConfig.setMaxPendingWriteBytes(maxPendingWriteBytes);
+
+            // 首个定义请求超出写缓冲区上限被拒绝（带附加信息，会先等握手完成）
+            ProtocolMessage<RpcRequest> rejected = buildMessage();
+            rejected.getHeader().setAttachments(Collections.singletonMap("traceId", "1"));
+            rejected.getBody().setArgs(new Object[]{new byte[8192]});
+            try {
+                connection.send(rejected, 60000L).get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+
+            // 下一个请求重新发送完整的方法信息，之后才只发送编号
+            connection.send(buildMessage(), 60000L);
+            connection.send(buildMessage(), 60000L);
+            for (int i = 0; i < 100 && requests.size() < 2; i++) {
+                Thread.sleep(20);
+            }
+            Assert.assertEquals(2, requests.size());
+            Assert.assertEquals("myService", requests.get(0).getServiceName());
+            Assert.assertEquals("myMethod", requests.get(0).getMethodName());
+            Assert.assertNotEquals(0, requests.get(0).getMethodId());
+            Assert.assertNull(requests.get(1).getServiceName());
+            Assert.assertEquals(requests.get(0).getMethodId(), requests.get(1).getMethodId());
+        } finally {
+            transportConfig.setMaxPendingWriteBytes(maxPendingWriteBytes);
+            v2Server.close();
+        }
+    }
+
+    private ProtocolMessage<RpcRequest> buildMessage() {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.JDK.getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName("myService");
+        rpcRequest.setMethodName("myMethod");
+        ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
+        protocolMessage.setHeader(header);
+        protocolMessage.setBody(rpcRequest);
+        return protocolMessage;
+    }
+}
@@ -0,0 +1,56 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ClientConfig;
+import com.yupi.yurpc.server.VertxHolder;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetServerOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多实例 TCP 服务器测试
+ */
+public class TcpServerVerticleTest {
+
+    @Test
+    public void multipleInstancesSharePort() throws Exception {
+        // 提前加载配置，避免服务端处理首个连接时阻塞事件循环
+        RpcApplication.getRpcConfig();
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        Vertx vertx = VertxHolder.getVertx();
+        String deploymentId = vertx.deployVerticle(() -> new TcpServerVerticle(port, new NetServerOptions()),
+                        new DeploymentOptions().setInstances(2))
+                .toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        NetClient netClient = vertx.createNetClient();
+        try {
+            ClientConfig clientConfig = new ClientConfig();
+            clientConfig.setHeartbeatInterval(50L);
+            clientConfig.setHeartbeatTimeout(300L);
+            TcpConnectionPool pool1 = new TcpConnectionPool("localhost", port, netClient, clientConfig);
+            TcpConnectionPool pool2 = new TcpConnectionPool("localhost", port, netClient, clientConfig);
+            TcpConnection connection1 = pool1.acquire().get(5, TimeUnit.SECONDS);
+            TcpConnection connection2 = pool2.acquire().get(5, TimeUnit.SECONDS);
+
+            // 两个实例都能处理连接上的心跳
+            for (int i = 0; i < 6; i++) {
+                Thread.sleep(60);
+                Assert.assertEquals(0, pool1.checkHeartbeats());
+                Assert.assertEquals(0, pool2.checkHeartbeats());
+            }
+            Assert.assertFalse(connection1.isClosed());
+            Assert.assertFalse(connection2.isClosed());
+        } finally {
+            netClient.close();
+            vertx.undeploy(deploymentId).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -51,4 +51,9 @@ public @interface RpcReference {
      */
     boolean mock() default false;
 
+    /**
+     * 调用超时时间（毫秒），0 表示使用配置
+     */
+    long timeout() default 0;
+
 }
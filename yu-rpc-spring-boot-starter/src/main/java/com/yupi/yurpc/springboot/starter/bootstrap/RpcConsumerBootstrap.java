@@ -40,7 +40,7 @@ public class RpcConsumerBootstrap implements BeanPostProcessor {
                     interfaceClass = field.getType();
                 }
                 field.setAccessible(true);
-                Object proxyObject = ServiceProxyFactory.getProxy(interfaceClass);
+                Object proxyObject = ServiceProxyFactory.getProxy(interfaceClass, rpcReference.timeout());
                 try {
                     field.set(bean, proxyObject);
                     field.setAccessible(false);
@@ -45,8 +45,8 @@ public class RpcProviderBootstrap implements BeanPostProcessor {
             String serviceName = interfaceClass.getName();
             String serviceVersion = rpcService.serviceVersion();
             // 2. 注册服务
-            // 本地注册
-            LocalRegistry.register(serviceName, beanClass);
+            // 本地注册（直接使用 Spring 管理的 Bean 实例）
+            LocalRegistry.register(serviceName, bean);
 
             // 全局配置
             final RpcConfig rpcConfig = RpcApplication.getRpcConfig();